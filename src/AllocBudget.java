@@ -0,0 +1,92 @@
+import java.io.*;
+import java.lang.management.*;
+
+/** Checks how many bytes Asm allocates per assembled line, for each instruction format, eg
+ *       java AllocBudget
+ *       java -Dbudget.simpleR=600 AllocBudget
+ *  Each format is assembled as a program of many copies of one line, twice with different
+ *  line counts; the difference in bytes allocated by this thread (ThreadMXBean), divided by the
+ *  difference in lines, is the cost of one line with the fixed costs of a run cancelled out.
+ *  The JIT is warmed up first and the lowest of several such measurements is kept, so that
+ *  the number is the same from run to run and a budget can sit close to it.
+ *  Prints one line per format and exits with 1 if any format is over its budget, so that an
+ *  allocation regression in Lexer.scan, Token or the checks fails the build before a release.
+ */
+public class AllocBudget {
+
+    // format name (also the suffix of its budget.* property), sample line, budget in bytes per line;
+    // the budgets are about 1.1 times the measurement in the comment, so update both together
+    private static final Object[][] FORMATS = {
+        { "simpleR",  "add $3, $4, $5",    785 },     // measured  713
+        { "mulDiv",   "mult $3, $4",       565 },     //           513
+        { "slWords",  "lw $3, -4($30)",   1110 },     //          1009
+        { "branches", "beq $3, $4, top",   730 },     //           665
+        { "jump",     "jr $31",            345 },     //           313
+        { "moves",    "mfhi $3",           345 },     //           313
+        { "word",     ".word 0x1234",      415 },     //           377
+    };
+
+    private static final int SMALL = 20000;
+    private static final int LARGE = 60000;
+
+    private static final int WARMUP = 20;     // runs of the large program before measuring
+    private static final int PAIRS  = 11;     // measurements, of which the lowest is kept
+
+    public static final void main( String[] args ) {
+        com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        if( ! threads.isThreadAllocatedMemorySupported() ) {
+            System.err.println( "ERROR, this JVM can't measure per-thread allocation" );
+            System.exit(1);
+        }
+        threads.setThreadAllocatedMemoryEnabled( true );
+
+        boolean over = false;
+        for( Object[] format : FORMATS ) {
+            String name   = (String) format[0];
+            byte[] small  = program( (String) format[1], SMALL );
+            byte[] large  = program( (String) format[1], LARGE );
+            long   budget = Long.getLong( "budget." + name, (Integer) format[2] );
+
+            // let the JIT settle (escape analysis changes what gets allocated) before measuring,
+            // then keep the lowest of several pairs: a late compilation can only remove allocations
+            for( int i = 0; i < WARMUP; i++ ) {
+                assemble( large );
+            }
+            long perLine = Long.MAX_VALUE;
+            for( int i = 0; i < PAIRS; i++ ) {
+                perLine = Math.min( perLine, ( allocated( threads, large ) - allocated( threads, small ) ) / ( LARGE - SMALL ) );
+            }
+
+            boolean ok = perLine <= budget;
+            over |= ! ok;
+            System.out.printf( "%-5s %-9s %6d bytes/line  (budget %d)%n", ok ? "OK" : "OVER", name, perLine, budget );
+        }
+        System.exit( over ? 1 : 0 );
+    }
+
+    // bytes allocated by this thread while assembling source
+    private static long allocated( com.sun.management.ThreadMXBean threads, byte[] source ) {
+        long id     = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes( id );
+        assemble( source );
+        return threads.getThreadAllocatedBytes( id ) - before;
+    }
+
+    private static void assemble( byte[] source ) {
+        String result = new Asm( false ).run( new ByteArrayInputStream( source ) );
+        if( ! result.equals( "OK" ) ) {
+            System.err.println( result );
+            System.exit(1);
+        }
+    }
+
+    // a label for the branches to use followed by lines copies of line
+    private static byte[] program( String line, int lines ) {
+        StringBuilder source = new StringBuilder( "top:\n" );
+        for( int i = 0; i < lines; i++ ) {
+            source.append( line ).append( '\n' );
+        }
+        return source.toString().getBytes();
+    }
+}
@@ -1,6 +1,7 @@
 import java.util.*;
-import java.math.*;
 import java.io.*;
+import java.nio.channels.*;
+import java.util.zip.*;
 
 /** A sample main class demonstrating the use of the Lexer.
  *  This main class just outputs each line in the input, followed by
@@ -13,6 +14,16 @@ import java.io.*;
  *  on the keyboard or redirected at the command line from a file, as by
  *       java Asm < src/sumOneToFive.asm
  *
+ *  The assembled words are written to standard output as raw big-endian bytes;
+ *  another output format (see Emitter) can be selected with -f, eg
+ *       java Asm -f ihex src/sumOneToFive.asm
+ *  and -s writes the labels and their addresses to a symbol map for the Disassembler,
+ *  -m the source line of every word to a LineMap for the Profile.
+ *
+ *  Gzip-compressed input (a something.asm.gz file, or on standard input) is recognised by its
+ *  magic number and decompressed on a separate thread while it is being assembled. So is a
+ *  pre-tokenized program written by a compiler back end (see BinaryProgram).
+ *
  *  Requires Java version 1.5
  *
  *  Minor modifications by JCBeatty, Jan 2009.
@@ -25,18 +36,20 @@ import java.io.*;
  *      class by looking for a file whose name matches the class name; (b) it is typically
  *      more difficulty to work with a program, especially a large program, that's defined
  *      in a single file. It is convenient for CS 241, however, because electronic submission
- *      of a program requires submitting only a single file.
+ *      of a program requires submitting only a single file. This assembler has since grown past
+ *      one file, and the classes that used to follow Asm here (AsmError, Kind, OpCode, Token and
+ *      Lexer) now have files of their own, since the other files use them too.
  *
  *  (2) "enums" - that is, "enumerated types". In CS 134, you learned to create symbolic constants
  *      by using statements such as "static final int meaningOfTheUniverse = 42". Roughly speaking,
  *      enums are a way of asking the java compiler to create a set of such symbolic constants
- *      having distinct values. The enumerated type Kind defined in this file is a good example.
+ *      having distinct values. The enumerated type Kind (in Kind.java) is a good example.
  *      However, enums are actually a special kind of class and can have constructors and methods.
- *      The enumerated type State defined much later in this file illustrates this.
+ *      The enumerated types OpCode, and State in Lexer.java, illustrate this.
  *
  *  (3) "Parametric types." This is a huge topic; Java's implementation has many warts and
  *      confusing corner cases. However, their only appearance here is in the declaration of an
- *      ArrayList of Tokens in the scan method below. [The Java class ArrayList (actually
+ *      ArrayList of Tokens in Lexer's scan method. [The Java class ArrayList (actually
  *      java.util.ArrayList) is Sun's version of the CS 134 ListArray class; the "List" you
  *      see here is also imported from java.util, and is analogous to (but not the same as)
  *      the List interface defined in CS 134.] So 
@@ -45,8 +58,8 @@ import java.io.*;
  *      and to automatically cast objects you retrieve from ret into Tokens so that you don't
  *      have to.
  *
- *  (4) Nested classes and interfaces. There are examples of both below, in the definition of the
- *      class Lexer: State, Chars, AllChars and Transition are nexted class definitions; and Chars
+ *  (4) Nested classes and interfaces. There are examples of both in Lexer.java, in the definition
+ *      of the class Lexer: State, Chars, AllChars and Transition are nexted class definitions; and Chars
  *      is a nested interface definition. Defining these *inside* the definition of Lexer means that
  *      they can only be used by code within Lexer, which is arguably good design if they're not
  *      *intended* to be used elsewhere.
@@ -56,7 +69,9 @@ import java.io.*;
  *      value returned by such an exit is made available to the shell. By convention, unix programs
  *      that quit normally return 0; programs that quit because they have encountered a fatal error
  *      return a non-zero value - often a non-zero error code specifying more-or-less precisely :-)
- *      exactly what error was encountered.
+ *      exactly what error was encountered. This assembler no longer exits from inside its
+ *      checks, though: they throw an AsmError, run(...) turns that into its return value, and
+ *      only main decides the exit code, so that Batch can assemble many files in one program.
  *
  *  Regarding note (1): if you decide you'd REALLY prefer that each class live in its own file,
  *  it's straightforward to write a simple shell script to merge those files into a single file
@@ -69,57 +84,417 @@ public class Asm {
 
 	private Map<String,Integer> symbolTable = new HashMap<String,Integer>();
 	
+	// the assembled program, one MIPS word per entry; written out in one go by emit
+	private int[] image = new int[1024];
+	private int imageSize = 0;
+	
+	// the largest image, in bytes, that pass 1 lets through: four times the memory the CS 241
+	// tools give a program, so that a typo'd .space or .fill fails as an AsmError instead of
+	// running out of heap in pass 2 (and taking the other files in a Batch with it)
+	static final int MAX_IMAGE = 1 << 26;
+	
+	// the source line of each word in image
+	private LineMap lineMap = new LineMap();
+	
+	// echo each line, its tokens and the symbol table to System.err while assembling
+	private boolean trace;
+	
+	// run the Peephole pass between pass 1 and pass 2 (java Asm -O)
+	private boolean optimize = false;
+	
+	public Asm() {
+		this( true );
+	}
+	
+	public Asm( boolean trace ) {
+		this.trace = trace;
+	}
+	
+	public void setOptimize( boolean optimize ) {
+		this.optimize = optimize;
+	}
+	
     // Execution starts here when the program is run from the command line by typing one of...
     //     java Asm < something.asm > something.mips
     //     java Asm   something.asm > something.mips
+    //     java Asm -f elf something.asm > something.elf
+    //     java Asm -O something.asm > something.mips        (see Peephole)
+    //     java Asm -s something.sym something.asm > something.mips   (symbol map, see Disassembler)
+    //     java Asm -m something.map something.asm > something.mips   (line map, see Profile)
+    //     java Asm   a.asm b.asm dir ...                  (see Batch; writes a.mips, b.mips, ...)
     public static final void main( String[] args ) {
         // Args contains the sequence of blank-delimited tokens supplied after the name of the class
         // containing main when a java program is executed from the command line.
-        if( args.length == 0 )
-            new Asm().run( System.in );                               // System.in is an InputStream
-        else {
-            Asm.exe( args[0] );
+        Emitter emitter = Emitter.raw();
+        boolean optimize = false;
+        String symbols = null;
+        String lines = null;
+        int first = 0;
+        while( first < args.length && args[first].startsWith( "-" ) ) {
+            if( args[first].equals( "-f" ) && first + 1 < args.length ) {
+                try {
+                    emitter = Emitter.forName( args[first + 1] );
+                } catch( IllegalArgumentException e ) {
+                    usage( e.getMessage() );
+                }
+                first += 2;
+            } else if( args[first].equals( "-O" ) ) {
+                optimize = true;
+                first += 1;
+            } else if( args[first].equals( "-s" ) && first + 1 < args.length ) {
+                symbols = args[first + 1];
+                first += 2;
+            } else if( args[first].equals( "-m" ) && first + 1 < args.length ) {
+                lines = args[first + 1];
+                first += 2;
+            } else {
+                usage( "Unknown option " + args[first] );
+            }
+        }
+        String result;
+        try {
+            if( args.length == first ) {
+                Asm asm = new Asm();
+                asm.setOptimize( optimize );
+                result = asm.runAny( source( System.in ) );               // System.in is an InputStream
+                if( result.equals( "OK" ) ) {
+                    asm.emit( emitter );
+                    if( symbols != null ) asm.writeSymbols( symbols );
+                    if( lines != null ) asm.writeLines( lines );
+                }
+            } else if( args.length - first > 1 || new File( args[first] ).isDirectory() ) {
+                if( symbols != null || lines != null ) {
+                    usage( "-s and -m write a single file, so they can't be used when assembling several" );
+                }
+                String[] paths = Arrays.copyOfRange( args, first, args.length );
+                System.exit( Batch.run( paths, emitter, optimize ) ? 0 : 1 );
+                return;
+            } else {
+                result = Asm.exe( args[first], emitter, optimize, symbols, lines );
+            }
+        } catch( AsmError e ) {
+            result = e.getMessage();                                  // eg the file couldn't be opened
+        }
+        if( ! result.equals( "OK" ) ) {
+            System.err.println( result );
+            System.exit( 1 );
         }
     }
 
+    private static void usage( String problem ) {
+        System.err.println( problem );
+        System.err.println( "usage: java Asm [-f format] [-O] [-s symbols] [-m lines] [file ...]" );
+        System.exit( 1 );
+    }
+
     // Called either from main(...) or from JUnit test_...(...) methods in TestCase subclasses.
     public static String exe( String inputFilePath ) {
+        return exe( inputFilePath, Emitter.raw() );
+    }
+
+    public static String exe( String inputFilePath, Emitter emitter ) {
+        return exe( inputFilePath, emitter, false );
+    }
+
+    public static String exe( String inputFilePath, Emitter emitter, boolean optimize ) {
+        return exe( inputFilePath, emitter, optimize, null, null );
+    }
+
+    // symbolsPath and linesPath, if not null, are where the symbol map (see writeSymbols)
+    // and the line map (see writeLines) are written
+    public static String exe( String inputFilePath, Emitter emitter, boolean optimize, String symbolsPath, String linesPath ) {
+        InputStream inStream;
         try {
-            FileInputStream inStream = new FileInputStream( inputFilePath );
-            return new Asm().run( inStream );
+            inStream = new FileInputStream( inputFilePath );
         } catch( FileNotFoundException e ) {
-            throw new Error( "Could not open file \"" + inputFilePath + "\" for reading." );
+            throw new AsmError( "Could not open file \"" + inputFilePath + "\" for reading." );
+        }
+        InputStream source = source( inStream );
+        try {
+            Asm asm = new Asm();
+            asm.setOptimize( optimize );
+            String result = asm.runAny( source );
+            if( result.equals( "OK" ) ) {
+                asm.emit( emitter );
+                if( symbolsPath != null ) asm.writeSymbols( symbolsPath );
+                if( linesPath != null ) asm.writeLines( linesPath );
+            }
+            return result;
+        } finally {
+            try { source.close(); } catch( IOException e ) { }
         }
     }
 
-    // outputs to screens
-    private static void toScreen ( Integer number ) {
-		System.out.write( (number >> 24) & 0xFF );
-		System.out.write( (number >> 16) & 0xFF );
-		System.out.write( (number >> 8) & 0xFF );
-		System.out.write( number & 0xFF );
+    /** Returns a stream of the source in input: input itself, or if it starts with the gzip
+     *  magic number, its decompressed contents, inflated on a ReadAheadInputStream's thread so
+     *  that decompression overlaps with lexing instead of needing a .asm file on disk first.
+     *  The stream returned supports mark and reset, for runAny.
+     */
+    static InputStream source( InputStream input ) {
+        try {
+            BufferedInputStream buffered = new BufferedInputStream( input, 1 << 16 );
+            buffered.mark( 2 );
+            int b0 = buffered.read();
+            int b1 = buffered.read();
+            buffered.reset();
+            if( b0 == 0x1f && b1 == 0x8b ) {
+                return new BufferedInputStream( new ReadAheadInputStream( new GZIPInputStream( buffered, 1 << 16 ) ), 1 << 16 );
+            }
+            return buffered;
+        } catch( IOException e ) {
+            throw new AsmError( "Could not read input: " + e.getMessage() );
+        }
+    }
+
+    // writes the assembled image to standard output in the emitter's format
+    void emit( Emitter emitter ) {
+        // not closed: closing the channel would close standard output itself
+        emit( emitter, new FileOutputStream( FileDescriptor.out ).getChannel() );
+    }
+
+    // writes the assembled image to out in the emitter's format
+    void emit( Emitter emitter, WritableByteChannel out ) {
+        try {
+            emitter.emit( image, imageSize, out );
+        } catch( IOException e ) {
+            throw new AsmError( "Could not write output: " + e.getMessage() );
+        }
+    }
+
+    // the assembled image, one MIPS word per entry
+    int[] words() {
+        return Arrays.copyOf( image, imageSize );
+    }
+
+    // the labels and their addresses
+    Map<String,Integer> symbols() {
+        return symbolTable;
+    }
+
+    // the source line of each word in the image
+    LineMap lineMap() {
+        return lineMap;
+    }
+
+    // writes the line map to path in LineMap's format
+    void writeLines( String path ) {
+        try {
+            OutputStream out = new FileOutputStream( path );
+            try {
+                lineMap.write( out );
+            } finally {
+                out.close();
+            }
+        } catch( IOException e ) {
+            throw new AsmError( "Could not write line map: " + e.getMessage() );
+        }
+    }
+
+    // the entries of a symbol table in order of address, and of name for labels at the same address
+    static List<Map.Entry<String,Integer>> byAddress( Map<String,Integer> symbols ) {
+        List<Map.Entry<String,Integer>> entries = new ArrayList<Map.Entry<String,Integer>>( symbols.entrySet() );
+        Collections.sort( entries, new Comparator<Map.Entry<String,Integer>>() {
+            public int compare( Map.Entry<String,Integer> a, Map.Entry<String,Integer> b ) {
+                int byAddress = a.getValue().compareTo( b.getValue() );
+                return byAddress != 0 ? byAddress : a.getKey().compareTo( b.getKey() );
+            }
+        } );
+        return entries;
+    }
+
+    // writes the symbol table to path as "label address" lines, in order of address, for the Disassembler
+    void writeSymbols( String path ) {
+        List<Map.Entry<String,Integer>> entries = byAddress( symbolTable );
+        try {
+            Writer out = new BufferedWriter( new FileWriter( path ) );
+            try {
+                for ( Map.Entry<String,Integer> entry : entries ) {
+                    out.write( entry.getKey() + " " + entry.getValue() + "\n" );
+                }
+            } finally {
+                out.close();
+            }
+        } catch( IOException e ) {
+            throw new AsmError( "Could not write symbols: " + e.getMessage() );
+        }
+    }
+
+    // appends a word to the assembled image
+    private void output ( int number ) {
+    	if ( imageSize == image.length ) {
+    		image = Arrays.copyOf( image, imageSize * 2 );
+    	}
+    	image[ imageSize++ ] = number;
+    }
+    
+    // appends n zero words to the assembled image in one step; returns the index of the first
+    private int reserve ( int n ) {
+    	if ( image.length - imageSize < n ) {
+    		image = Arrays.copyOf( image, Math.max( Math.min( image.length * 2, MAX_IMAGE / 4 ), imageSize + n ) );
+    	}
+    	imageSize += n;
+    	return imageSize - n;
     }
     
-    // method to handle .word instructions
+    // method to handle .word instructions: one or more values separated by commas
     private void dotWord ( Token[] tokens, int currentToken ){
+    	if ( tokens.length - currentToken < 2 || ( tokens.length - currentToken ) % 2 != 0 ) {
+    		throw new AsmError( "ERROR, incorrect .word syntax " );
+    	}
+    	for ( int i = currentToken + 1; i < tokens.length; i += 2 ) {
+	    	if ( tokens[ i ].kind == Kind.INT || tokens[ i ].kind == Kind.HEXINT ) {
+	    	} else if ( tokens[ i ].kind == Kind.ID ){
+	    		
+	    	}else {
+	    		throw new AsmError( "ERROR, not valid int in .word" );
+	    	}
+	    	if ( i + 1 < tokens.length ) {
+	    		compare( tokens[ i + 1 ].kind, Kind.COMMA );
+	    	}
+    	}
+    }
+    
+    // method to handle .space n: n zero bytes
+    private void dotSpace ( Token[] tokens, int currentToken ){
     	if ( tokens.length - currentToken != 2 ) {
-    		System.err.println( "ERROR, incorrect .word syntax ");
-    		System.exit(0);
+    		throw new AsmError( "ERROR, incorrect .space syntax " );
     	}
-    	if ( tokens[ currentToken + 1].kind == Kind.INT || tokens[currentToken + 1].kind == Kind.HEXINT ) {
-    	} else if ( tokens[ currentToken + 1].kind == Kind.ID ){
-    		
-    	}else {
-    		System.err.println( "ERROR, not valid int in .word" );
-    		System.exit(0);
+    	count( tokens[ currentToken + 1 ] );
+    }
+    
+    // method to handle .fill count, value: count copies of the word value
+    private void dotFill ( Token[] tokens, int currentToken ){
+    	if ( tokens.length - currentToken != 4 ) {
+    		throw new AsmError( "ERROR, incorrect .fill syntax " );
+    	}
+    	count( tokens[ currentToken + 1 ] );
+    	compare( tokens[ currentToken + 2 ].kind, Kind.COMMA );
+    	if ( tokens[ currentToken + 3 ].kind != Kind.INT && tokens[ currentToken + 3 ].kind != Kind.HEXINT
+    			&& tokens[ currentToken + 3 ].kind != Kind.ID ) {
+    		throw new AsmError( "ERROR, not valid int in .fill" );
+    	}
+    }
+    
+    // method to handle .ascii and .asciiz: the bytes of a string
+    private void dotAscii ( Token[] tokens, int currentToken ){
+    	if ( tokens.length - currentToken != 2 ) {
+    		throw new AsmError( "ERROR, incorrect .ascii syntax " );
+    	}
+    	compare( tokens[ currentToken + 1 ].kind, Kind.STRING );
+    	unescape( tokens[ currentToken + 1 ].lexeme );
+    }
+    
+    // the value of a non-negative count in .space or .fill
+    private int count ( Token token ){
+    	if ( token.kind != Kind.INT && token.kind != Kind.HEXINT ) {
+    		throw new AsmError( "ERROR, not valid count " + token.lexeme );
+    	}
+    	int n = token.toInt();
+    	if ( n < 0 ) {
+    		throw new AsmError( "ERROR, negative count " + token.lexeme );
+    	}
+    	return n;
+    }
+    
+    // the bytes of a string literal, without its quotes and with \n \t \0 \\ \" replaced
+    private byte[] unescape ( String lexeme ){
+    	byte[] bytes = new byte[ lexeme.length() ];
+    	int n = 0;
+    	for ( int i = 1; i < lexeme.length() - 1; i++ ) {
+    		char c = lexeme.charAt( i );
+    		if ( c == '\\' ) {
+    			c = lexeme.charAt( ++i );
+    			switch ( c ) {
+    				case 'n':  c = '\n'; break;
+    				case 't':  c = '\t'; break;
+    				case '0':  c = 0;    break;
+    				case '\\':
+    				case '"':  break;
+    				default:
+    					throw new AsmError( "ERROR, invalid escape \\" + c + " in string" );
+    			}
+    		}
+    		if ( c > 0xFF ) {
+    			throw new AsmError( "ERROR, non-ASCII character in string" );
+    		}
+    		bytes[ n++ ] = (byte) c;
+    	}
+    	return Arrays.copyOf( bytes, n );
+    }
+    
+    // checks a data directive and returns how many bytes it takes up, rounded up to whole words
+    private int dataSize ( Token[] tokens, int currentToken ){
+    	long size = 0;
+    	switch ( tokens[ currentToken ].kind ) {
+    		case DOTWORD:
+    			dotWord( tokens, currentToken );
+    			size = 4 * ( ( tokens.length - currentToken ) / 2 );
+    			break;
+    		case DOTSPACE:
+    			dotSpace( tokens, currentToken );
+    			size = tokens[ currentToken + 1 ].toInt() & 0xFFFFFFFFL;
+    			break;
+    		case DOTFILL:
+    			dotFill( tokens, currentToken );
+    			size = 4 * ( tokens[ currentToken + 1 ].toInt() & 0xFFFFFFFFL );
+    			break;
+    		case DOTASCII:
+    		case DOTASCIIZ:
+    			dotAscii( tokens, currentToken );
+    			size = unescape( tokens[ currentToken + 1 ].lexeme ).length
+    					+ ( tokens[ currentToken ].kind == Kind.DOTASCIIZ ? 1 : 0 );
+    			break;
+    	}
+    	size = ( size + 3 ) & ~3L;
+    	if ( size > MAX_IMAGE ) {
+    		throw new AsmError( "ERROR, data directive too large" );
+    	}
+    	return (int) size;
+    }
+    
+    // emits the block of words for a data directive already checked by dataSize
+    private void emitData ( Token[] tokens, int currentToken, int size ){
+    	int start = reserve( size / 4 );
+    	switch ( tokens[ currentToken ].kind ) {
+    		case DOTWORD:
+    			for ( int i = currentToken + 1; i < tokens.length; i += 2 ) {
+    				image[ start++ ] = dataValue( tokens[ i ] );
+    			}
+    			break;
+    		case DOTSPACE:
+    			// the image only grows, so the reserved words are still zero
+    			break;
+    		case DOTFILL:
+    			Arrays.fill( image, start, imageSize, dataValue( tokens[ currentToken + 3 ] ) );
+    			break;
+    		case DOTASCII:
+    		case DOTASCIIZ:
+    			// big-endian, like every other word; .asciiz's terminator and the padding are the zeros left over
+    			byte[] bytes = unescape( tokens[ currentToken + 1 ].lexeme );
+    			for ( int i = 0; i < bytes.length; i++ ) {
+    				image[ start + i / 4 ] |= ( bytes[ i ] & 0xFF ) << ( 24 - 8 * ( i % 4 ) );
+    			}
+    			break;
     	}
     }
+    
+    // the word a .word or .fill value stands for: an integer, or the address of a label
+    private int dataValue ( Token token ){
+    	if ( token.kind == Kind.HEXINT || token.kind == Kind.INT ){
+    		return token.toInt();
+    	}
+    	return address( token.lexeme );
+    }
+    
+    private static boolean isData ( Kind kind ){
+    	return kind == Kind.DOTWORD || kind == Kind.DOTSPACE || kind == Kind.DOTFILL
+    			|| kind == Kind.DOTASCII || kind == Kind.DOTASCIIZ;
+    }
       
     // method to handle labels
     private void makeLabel ( String label, int locCounter ){
     	if ( symbolTable.containsKey( label ) ) {
-    		System.err.println( " ERROR, duplicate label " + label );
-    		System.exit(0);
+    		throw new AsmError( " ERROR, duplicate label " + label );
     	} 
     	symbolTable.put( label , locCounter );
     }
@@ -127,32 +502,28 @@ public class Asm {
     // method to handle jr and jalr instructions
     private void jump ( Token[] tokens, int currentToken ){
     	if ( tokens.length - currentToken != 2 ) {
-    		System.err.println( "ERROR, incorrect jump register syntax ");
-    		System.exit(0);
+    		throw new AsmError( "ERROR, incorrect jump register syntax " );
     	}
     	if ( tokens[ currentToken + 1].kind == Kind.REGISTER ) {
     		//store register number without the $ sign
     		String regNum = tokens[ currentToken + 1].lexeme.substring(1);
     		checkRegNum( regNum );
     	} else {
-    		System.err.println( "ERROR, NOT VALID JR syntax" );
-    		System.exit(0);
+    		throw new AsmError( "ERROR, NOT VALID JR syntax" );
     	}
     }
       
     // method to handle mfhi, mflo, lis instructions
     private void moves ( Token[] tokens, int currentToken ){
     	if ( tokens.length - currentToken != 2 ) {
-    		System.err.println( "ERROR, incorrect jump register syntax ");
-    		System.exit(0);
+    		throw new AsmError( "ERROR, incorrect jump register syntax " );
     	}
     	if ( tokens[ currentToken + 1].kind == Kind.REGISTER ) {
     		//store register number without the $ sign
     		String regNum = tokens[ currentToken + 1].lexeme.substring(1);
     		checkRegNum( regNum );
     	} else {
-    		System.err.println( "ERROR, NOT VALID moves syntax" );
-    		System.exit(0);
+    		throw new AsmError( "ERROR, NOT VALID moves syntax" );
     	}
     }
     //check if register is between 0 and 31
@@ -160,15 +531,13 @@ public class Asm {
 		if ( Integer.valueOf( regNum ) >= 0 &&
 				Integer.valueOf( regNum ) < 32 ){
 		} else {
-			System.err.println( "ERROR, NOT VALID REGISTER" );
-    		System.exit(0);
+			throw new AsmError( "ERROR, NOT VALID REGISTER" );
 		}
     }
     private void compare (Kind k, Kind target){
     	
     	if (k != target){
-    		System.err.println ("ERROR, incorrect format");
-    		System.exit(0);
+    		throw new AsmError( "ERROR, incorrect format" );
     	}
     	
     }
@@ -176,8 +545,7 @@ public class Asm {
     private void simpleR ( Token[] tokens, int currentToken ){
     	String temp;
     	if ( tokens.length - currentToken != 6 ) {
-    		System.err.println( "ERROR, incorrect simple Register Instruction Length ");
-    		System.exit(0);
+    		throw new AsmError( "ERROR, incorrect simple Register Instruction Length " );
     	}
     	
     	if(	tokens[ currentToken + 2].kind == Kind.COMMA &&
@@ -191,8 +559,7 @@ public class Asm {
     		}
 
     	} else {
-    		System.err.println( "ERROR, NOT VALID simple Register Instruction syntax" );
-    		System.exit(0);
+    		throw new AsmError( "ERROR, NOT VALID simple Register Instruction syntax" );
     	}
     }
     
@@ -200,8 +567,7 @@ public class Asm {
     private void mulDiv ( Token[] tokens, int currentToken ){
     	String temp;
     	if ( tokens.length - currentToken != 4 ) {
-    		System.err.println( "ERROR, incorrect mult or div Instruction Length ");
-    		System.exit(0);
+    		throw new AsmError( "ERROR, incorrect mult or div Instruction Length " );
     	}
     	
     	if(	tokens[ currentToken + 2].kind == Kind.COMMA ) {
@@ -214,8 +580,7 @@ public class Asm {
     		}
 
     	} else {
-    		System.err.println( "ERROR, NOT VALID mult or div Instruction syntax" );
-    		System.exit(0);
+    		throw new AsmError( "ERROR, NOT VALID mult or div Instruction syntax" );
     	}
     }
     
@@ -223,8 +588,7 @@ public class Asm {
     private void slWords ( Token[] tokens, int currentToken ){
     	String temp;
     	if ( tokens.length - currentToken != 7 ) {
-    		System.err.println( "ERROR, incorrect lw or sw Instruction Length ");
-    		System.exit(0);
+    		throw new AsmError( "ERROR, incorrect lw or sw Instruction Length " );
     	}
     	
     	if(	tokens[ currentToken + 2].kind == Kind.COMMA &&
@@ -244,32 +608,27 @@ public class Asm {
     					tokens[ currentToken + 3].toInt() <= 32767) {
     				
     			} else {
-    				System.err.println( "ERROR, Integer out of range");
-    				System.exit(0);
+    				throw new AsmError( "ERROR, Integer out of range" );
     			}
     		} else if (	tokens[ currentToken + 3].kind == Kind.HEXINT ) {
     			if ( tokens[ currentToken + 3 ].toInt() <= 0xffff ){
     				
     			} else {
-    				System.err.println( "ERROR, hex value out of range" );
-    				System.exit(0);
+    				throw new AsmError( "ERROR, hex value out of range" );
     			}
     		} else {
-    			System.err.println( "ERROR, invalid lw or sw offset");
-    			System.exit(0);
+    			throw new AsmError( "ERROR, invalid lw or sw offset" );
     		}
     		
     	} else {
-    		System.err.println( "ERROR, NOT VALID lw or sw Instruction syntax" );
-    		System.exit(0);
+    		throw new AsmError( "ERROR, NOT VALID lw or sw Instruction syntax" );
     	}
     }
     // method to handle bne, beq
     private void branches ( Token[] tokens, int currentToken ){
     	String temp;
     	if ( tokens.length - currentToken != 6 ) {
-    		System.err.println( "ERROR, incorrect branch instructions Length ");
-    		System.exit(0);
+    		throw new AsmError( "ERROR, incorrect branch instructions Length " );
     	}
     	
     	if(	tokens[ currentToken + 2].kind == Kind.COMMA &&
@@ -288,175 +647,114 @@ public class Asm {
     					tokens[ currentToken + 5].toInt() <= 32767) {
     				
     			} else {
-    				System.err.println( "ERROR, Integer out of range");
-    				System.exit(0);
+    				throw new AsmError( "ERROR, Integer out of range" );
     			}
     			
     		} else if (	tokens[ currentToken + 5].kind == Kind.HEXINT ) {
     			if ( tokens[ currentToken + 5 ].toInt() <= 0xffff ){
     				
     			} else {
-    				System.err.println( "ERROR, hex value out of range" );
-    				System.exit(0);
+    				throw new AsmError( "ERROR, hex value out of range" );
     			}
     		} else if ( tokens[ currentToken + 5].kind == Kind.ID ) {
     			
     		} else {
-    			System.err.println( "ERROR, NOT VALID branch instruction syntax" );
-        		System.exit(0);
+    			throw new AsmError( "ERROR, NOT VALID branch instruction syntax" );
     		}
 
     	} else {
-    		System.err.println( "ERROR, NOT VALID branch instruction syntax" );
-    		System.exit(0);
+    		throw new AsmError( "ERROR, NOT VALID branch instruction syntax" );
     	}
     }
     
-    //code the JALR instruction
-    private void codeJALR( Token[] tokens, int currentToken ){
-    	Integer Number = 0x09;
-    	Integer S = Integer.valueOf( tokens[currentToken + 1].lexeme.substring(1) );
-    	Number = Number | ( S << 21);
-    	toScreen( Number );
-    }
-    
-    //code the JR instruction
-    private void codeJR( Token[] tokens, int currentToken ){
-    	Integer Number = 0x08;
-    	Integer S = Integer.valueOf( tokens[currentToken + 1].lexeme.substring(1) );
-    	Number = Number | ( S << 21);
-    	toScreen( Number );
-    }
-    
-    //code the ADD, SUB, SLT, and ALTU 
-    private void codeSimpleR( Token[] tokens, int currentToken, Integer Number ){
-    	Integer D = Integer.valueOf( tokens[currentToken + 1].lexeme.substring(1) );
-    	Integer S = Integer.valueOf( tokens[currentToken + 3].lexeme.substring(1) );
-    	Integer T = Integer.valueOf( tokens[currentToken + 5].lexeme.substring(1) );
-    	Number = Number | ( S << 21) | ( T << 16 ) | ( D << 11);
-    	toScreen( Number );
-    }
-    
-    //code the LIS, MFHI, MFLO
-    private void codeMoves( Token[] tokens, int currentToken, Integer Number ){
-    	Integer D = Integer.valueOf( tokens[currentToken + 1].lexeme.substring(1) );
-    	Number = Number | ( D << 11);
-    	toScreen( Number );
-    }
-    
-    //code the MULT, MULTU, DIV, DIVU
-    private void codeMulDiv( Token[] tokens, int currentToken, Integer Number ){
-    	Integer S = Integer.valueOf( tokens[currentToken + 1].lexeme.substring(1) );
-    	Integer T = Integer.valueOf( tokens[currentToken + 3].lexeme.substring(1) );
-    	Number = Number | ( S << 21) | ( T << 16 );
-    	toScreen( Number );
+    // the number of a register token, without the $ sign
+    private static int register( Token token ){
+    	return Integer.parseInt( token.lexeme.substring(1) );
     }
     
-    //code branches
-    private void codeBranches( Token[] tokens, int currentToken, Integer Number, int lineNumber ){
-    	Integer OpCode = Number;
-    	Integer S = Integer.valueOf( tokens[currentToken + 1].lexeme.substring(1) );
-    	Integer T = Integer.valueOf( tokens[currentToken + 3].lexeme.substring(1) );
-    	Integer i = 0;
-    	int temp = 0;
-    	if ( tokens[ currentToken + 5].kind == Kind.ID ){
-    		try{
-    			temp = symbolTable.get( tokens[ currentToken + 5].lexeme );
-    		}catch ( Exception e ){
-    			System.err.println("ERROR, The label " + tokens[ currentToken + 5].lexeme + " is not defined" );
-				System.exit(0);
-    		}
-			i = ( temp - lineNumber )/ 4 ;
-    	}else{
-        	i = ( tokens[currentToken + 5].toInt());
+    // the address of a label; also used by BinaryProgram input
+    private int address( String label ){
+    	Integer Number = symbolTable.get( label );
+    	if ( Number == null ){
+    		throw new AsmError( "ERROR, The label " + label + " is not defined" );
     	}
-        	Number = (OpCode << 26 ) | ( S << 21) | ( T << 16 ) | ( i & 0xffff );
-    	toScreen( Number );
+    	return Number;
     }
     
-    //code sw and lw 
-    private void codeSLWord( Token[] tokens, int currentToken, Integer Number){
-    	Integer OpCode = Number;
-    	Integer T = Integer.valueOf( tokens[currentToken + 1].lexeme.substring(1) );
-    	Integer S = Integer.valueOf( tokens[currentToken + 5].lexeme.substring(1) );
-    	Integer i = Integer.valueOf( tokens[currentToken + 3].toInt() );
-
-       	Number = (OpCode << 26 ) | ( S << 21) | ( T << 16 ) | ( i & 0xffff );
-    	toScreen( Number );
+    // encodes one instruction. The registers are given in the order they are written in
+    // assembly, eg add r1, r2, r3 / mult r1, r2 / lw r1, i(r2) / beq r1, r2, i / jr r1,
+    // and i is the branch offset in words or the lw and sw offset in bytes.
+    // Shared by the text and binary inputs, and by anything else that has to encode instructions.
+    static int encode( OpCode operator, int r1, int r2, int r3, int i ){
+    	switch( operator ) {
+    		case JR:
+    		case JALR:
+    			return operator.funct | ( r1 << 21 );
+    		case ADD:
+    		case SUB:
+    		case SLT:
+    		case SLTU:
+    			return operator.funct | ( r2 << 21 ) | ( r3 << 16 ) | ( r1 << 11 );
+    		case MFHI:
+    		case MFLO:
+    		case LIS:
+    			return operator.funct | ( r1 << 11 );
+    		case MULT:
+    		case MULTU:
+    		case DIV:
+    		case DIVU:
+    			return operator.funct | ( r1 << 21 ) | ( r2 << 16 );
+    		case BEQ:
+    		case BNE:
+    			return ( operator.opcode << 26 ) | ( r1 << 21 ) | ( r2 << 16 ) | ( i & 0xffff );
+    		case LW:
+    		case SW:
+    			return ( operator.opcode << 26 ) | ( r2 << 21 ) | ( r1 << 16 ) | ( i & 0xffff );
+    		default:
+    			throw new AsmError( "ERROR, Invalid OpCode" );
+    	}
     }
     
     // Assemble and shift opcode
     private void AssembleOpcode( Token[] tokens, int currentToken, int lineNumber ){
-    	String temp = tokens[currentToken].lexeme.toUpperCase();
-    	OpCode operator = OpCode.valueOf( temp );
-    	Integer Number = 0;
+    	OpCode operator = OpCode.forName( tokens[currentToken].lexeme );
     	
     	switch( operator ) {
     		case JR:
-    			codeJR ( tokens, currentToken );
-    			break;
     		case JALR:
-    			codeJALR ( tokens, currentToken );
+    		case MFHI:
+    		case MFLO:
+    		case LIS:
+    			output( encode( operator, register( tokens[currentToken + 1] ), 0, 0, 0 ) );
     			break;
     		case ADD:
-    			Number = 0x20;
-    			codeSimpleR ( tokens, currentToken, Number );
-    			break;
     		case SUB:
-    			Number = 0x22;
-    			codeSimpleR ( tokens, currentToken, Number );
-    			break;
     		case SLT:
-    			Number = 0x2A;
-    			codeSimpleR ( tokens, currentToken, Number );
-    			break;
     		case SLTU:
-    			Number = 0x2B;
-    			codeSimpleR ( tokens, currentToken, Number );
-    			break;
-    		case BEQ:
-    			Number = 4;
-    			codeBranches ( tokens, currentToken, Number, lineNumber );
-    			break;
-    		case BNE:
-    			Number = 5;
-    			codeBranches ( tokens, currentToken, Number, lineNumber );
-    			break;
-    		case MFHI:
-    			Number = 0x10;
-    			codeMoves ( tokens, currentToken, Number );
-    			break;
-    		case MFLO:
-    			Number = 0x12;
-    			codeMoves ( tokens, currentToken, Number );
-    			break;
-    		case LIS:
-    			Number = 0x14;
-    			codeMoves ( tokens, currentToken, Number );
+    			output( encode( operator, register( tokens[currentToken + 1] ), register( tokens[currentToken + 3] ),
+    					register( tokens[currentToken + 5] ), 0 ) );
     			break;
     		case MULT:
-    			Number = 0x18;
-    			codeMulDiv ( tokens, currentToken, Number );
-    			break;
-    		case DIV:
-    			Number = 0x1A;
-    			codeMulDiv ( tokens, currentToken, Number );
-    			break;
     		case MULTU:
-    			Number = 0x19;
-    			codeMulDiv ( tokens, currentToken, Number );
-    			break;
+    		case DIV:
     		case DIVU:
-    			Number = 0x1B;
-    			codeMulDiv ( tokens, currentToken, Number );
+    			output( encode( operator, register( tokens[currentToken + 1] ), register( tokens[currentToken + 3] ), 0, 0 ) );
     			break;
-    		case LW:
-    			Number = 35;
-    			codeSLWord( tokens, currentToken, Number );
+    		case BEQ:
+    		case BNE:
+    			// lineNumber is the address of the next instruction, which offsets are relative to
+    			int i;
+    			if ( tokens[ currentToken + 5].kind == Kind.ID ){
+    				i = ( address( tokens[ currentToken + 5].lexeme ) - lineNumber )/ 4 ;
+    			}else{
+    				i = tokens[currentToken + 5].toInt();
+    			}
+    			output( encode( operator, register( tokens[currentToken + 1] ), register( tokens[currentToken + 3] ), 0, i ) );
     			break;
+    		case LW:
     		case SW:
-    			Number = 43;
-    			codeSLWord( tokens, currentToken, Number );
+    			output( encode( operator, register( tokens[currentToken + 1] ), register( tokens[currentToken + 5] ), 0,
+    					tokens[currentToken + 3].toInt() ) );
     			break;
     	}
     }
@@ -465,14 +763,11 @@ public class Asm {
     private void sortOpcode( Token[] tokens, int currentToken ){
     	
     	// convert String to ENUM
-    	String temp = tokens[currentToken].lexeme.toUpperCase();
-    	
     	OpCode operator = OpCode.BLANK;
         try {
-        	operator = OpCode.valueOf( temp );
+        	operator = OpCode.forName( tokens[currentToken].lexeme );
         } catch ( Exception e) {
-        	System.err.println("ERROR, the opCode " + temp + " does not exist");
-        	System.exit(0);
+        	throw new AsmError( "ERROR, the opCode " + tokens[currentToken].lexeme.toUpperCase() + " does not exist" );
         }
     	
     	switch( operator ) {
@@ -507,27 +802,138 @@ public class Asm {
     			slWords( tokens, currentToken );
     			break;
     		default:
-    			System.err.println( "ERROR, Invalid OpCode" );
-    			System.exit(0);
+    			throw new AsmError( "ERROR, Invalid OpCode" );
     	}
     }
     
+    // advances to the next source line; false at the end of the input
+    private boolean nextLine( LineReader in ) {
+        try {
+            return in.next();
+        } catch( IOException e ) {
+            throw new AsmError( "Could not read input: " + e.getMessage() );
+        }
+    }
+    
     // input should be either System.in or a FileInputStream attached to an input file (something.asm).
-    private String run( InputStream input ) {
+    String run( InputStream input ) {
+        try {
+            assemble( input );
+        } catch( AsmError e ) {
+            return e.getMessage();
+        }
+
+        // Main uses the value returned to pick its exit code, and it's useful if you decide to do JUnit testing;
+        // run should return either a string containing "ERROR" or a string containing "OK", depending
+        // on whether or not your assembler finds an error in the file it's assembly. Of course, that
+        // leaves open the question of whether the MIPS code generated for a program w/o syntax errors
+        // is semantically correct. You can automate testing that, too, but it takes more work since
+        // you have to run the resulting *.mips file via java cs241.twoints and check its output...
+        return( "OK" );
+    }
+
+    // assembles a stream returned by source(), which holds either assembly text or a BinaryProgram
+    String runAny( InputStream source ) {
+        boolean binary;
+        try {
+            binary = BinaryProgram.isBinary( source );
+        } catch( IOException e ) {
+            return "ERROR, could not read input: " + e.getMessage();
+        }
+        return binary ? runBinary( source ) : run( source );
+    }
+
+    // input holds a BinaryProgram; like run, returns "OK" or the error
+    String runBinary( InputStream input ) {
+        try {
+            assemble( BinaryProgram.read( input ) );
+        } catch( EOFException e ) {
+            return "ERROR, binary program is truncated";
+        } catch( IOException e ) {
+            return "ERROR, could not read binary program: " + e.getMessage();
+        } catch( AsmError e ) {
+            return e.getMessage();
+        }
+        return( "OK" );
+    }
+
+    // the same two passes as for text, over records whose strings have already been parsed
+    private void assemble( BinaryProgram program ) {
+    	OpCode[] opcodes = OpCode.values();
+    	
+    	//pass 1, get all labels in to symbol table and check the operands
+    	int locCounter = 0;
+    	for ( int r = 0; r < program.count; r++ ) {
+    		int kind = program.kinds[r] & 0xFF;
+    		if ( kind == BinaryProgram.LABEL ) {
+    			if ( program.refs[r] < 0 ) {
+    				throw new AsmError( "ERROR, record " + r + " defines no label" );
+    			}
+    			makeLabel( program.labels[ program.refs[r] ], locCounter );
+    			continue;
+    		}
+    		if ( kind != BinaryProgram.WORD ) {
+    			if ( kind == 0 || kind >= opcodes.length ) {
+    				throw new AsmError( "ERROR, record " + r + " has invalid opcode " + kind );
+    			}
+    			int regs = program.regs[r];
+    			if ( ( regs & 0xE0E0E0 ) != 0 ) {
+    				throw new AsmError( "ERROR, NOT VALID REGISTER in record " + r );
+    			}
+    			OpCode operator = opcodes[kind];
+    			boolean branch = operator == OpCode.BEQ || operator == OpCode.BNE;
+    			if ( program.refs[r] >= 0 && ! branch ) {
+    				throw new AsmError( "ERROR, record " + r + " can't refer to a label" );
+    			}
+    			boolean immediate = ( branch && program.refs[r] < 0 )
+    					|| operator == OpCode.LW || operator == OpCode.SW;
+    			if ( immediate && ( program.imms[r] < -32768 || program.imms[r] > 0xffff ) ) {
+    				throw new AsmError( "ERROR, Integer out of range in record " + r );
+    			}
+    		}
+    		locCounter += 4;
+    	}
+    	
+    	// 2nd pass
+    	int lineCounter = 0;
+    	for ( int r = 0; r < program.count; r++ ) {
+    		int kind = program.kinds[r] & 0xFF;
+    		if ( kind == BinaryProgram.LABEL ) {
+    			continue;
+    		}
+    		lineCounter += 4;
+    		lineMap.mark( imageSize, r + 1 );
+    		int ref = program.refs[r];
+    		if ( kind == BinaryProgram.WORD ) {
+    			output( ref < 0 ? program.imms[r] : address( program.labels[ref] ) );
+    		} else {
+    			OpCode operator = opcodes[kind];
+    			int i = program.imms[r];
+    			if ( ref >= 0 && ( operator == OpCode.BEQ || operator == OpCode.BNE ) ) {
+    				i = ( address( program.labels[ref] ) - lineCounter ) / 4;
+    			}
+    			int regs = program.regs[r];
+    			output( encode( operator, regs >> 16, ( regs >> 8 ) & 0xFF, regs & 0xFF, i ) );
+    		}
+    	}
+    }
+
+    private void assemble( InputStream input ) {
 
         Lexer   lexer = new Lexer();
-        Scanner in    = new Scanner( input );
+        LineReader in = new LineReader( input );
         int locCounter = 0;
         List<Token[]> listl = new ArrayList<Token[]>();
+        int[] sizes = new int[1024];   // bytes taken by each line in listl
         
-        while( in.hasNextLine() ) {
+        while( nextLine( in ) ) {
             
-            String line = in.nextLine();
             // Scan the line into an array of tokens.
             Token[] tokens;
-            tokens = lexer.scan( line );
+            tokens = lexer.scan( in.buffer(), in.start(), in.end() );
         	int currentToken = 0; //current token
         	listl.add( tokens );
+        	int before = locCounter;
             
             //pass 1, get all labels in to symbol table
             if (tokens.length == 0 ){
@@ -548,9 +954,16 @@ public class Asm {
             	
             	switch ( tempKind ){
             	
-            		case DOTWORD: {
-            			dotWord( tokens, currentToken );
-                        locCounter += 4;
+            		case DOTWORD:
+            		case DOTSPACE:
+            		case DOTFILL:
+            		case DOTASCII:
+            		case DOTASCIIZ: {
+            			int size = dataSize( tokens, currentToken );
+            			if ( locCounter + (long) size > MAX_IMAGE ) {
+            				throw new AsmError( "ERROR, program too large" );
+            			}
+                        locCounter += size;
             			break;
             		}
             		case WHITESPACE: {
@@ -562,20 +975,38 @@ public class Asm {
             			break;
             		}
             		default: {
-            			System.err.println( "ERROR, invalid mips assembly code" );
-            			System.exit(0);
+            			throw new AsmError( "ERROR, invalid mips assembly code" );
             		}
             	}
 
             }
 
+            if ( sizes.length < listl.size() ) {
+            	sizes = Arrays.copyOf( sizes, sizes.length * 2 );
+            }
+            sizes[ listl.size() - 1 ] = locCounter - before;
 	            
-	            System.err.println( line );
-	            for( int i = 0; i < tokens.length; i++ ) {
-	                System.err.println( "  Token: " + tokens[i] );
+	            if ( trace ) {
+		            System.err.println( new String( in.buffer(), in.start(), in.end() - in.start() ) );
+		            for( int i = 0; i < tokens.length; i++ ) {
+		                System.err.println( "  Token: " + tokens[i] );
+		            }
 	            }
             }
         
+        // peephole pass: rewrites listl, after which the labels' addresses have to be worked out again
+        if ( optimize && Peephole.optimize( listl, sizes, symbolTable ) > 0 ) {
+        	symbolTable.clear();
+        	locCounter = 0;
+        	for ( int line = 0; line < listl.size(); line++ ) {
+        		Token[] tokens = listl.get( line );
+        		for ( int t = 0; t < tokens.length && tokens[t].kind == Kind.LABEL; t++ ) {
+        			makeLabel( tokens[t].lexeme.substring( 0, tokens[t].lexeme.length() - 1 ), locCounter );
+        		}
+        		locCounter += sizes[ line ];
+        	}
+        }
+        
         // 2nd pass
         // loop through array list, looking for certain keywords.
         int i = 0;
@@ -591,25 +1022,18 @@ public class Asm {
                 	current++;
             	}
             }
-    	// Dotword
+    	// Dotword and the other data directives
             if ( current == tempTokens.length ){
             	
             } else {
-	    		if ( tempTokens[current].kind == Kind.DOTWORD ){
-	    			lineCounter += 4;
-	    			if ( tempTokens[current+1].kind == Kind.HEXINT || tempTokens[current+1].kind == Kind.INT ){
-	    				int Numbers = tempTokens[current+1].toInt();
-	    				toScreen( Numbers );
-	    			} else {
-	    				Integer Number = symbolTable.get( tempTokens[current+1].lexeme );
-	    				if ( Number == null ){
-	    					System.err.println("ERROR, The label " + tempTokens[current+1].lexeme + " is not defined" );
-	    					System.exit(0);
-	    				}
-	    				toScreen( Number );
-	    			}
+	    		if ( isData( tempTokens[current].kind ) ){
+	    			int size = dataSize( tempTokens, current );
+	    			lineCounter += size;
+	    			if ( size > 0 ) lineMap.mark( imageSize, i + 1 );
+	    			emitData( tempTokens, current, size );
 	    		} else if ( tempTokens[current].kind == Kind.ID) {
 	    			lineCounter += 4;
+	    			lineMap.mark( imageSize, i + 1 );
 	    			AssembleOpcode( tempTokens, current, lineCounter);
 	    		}
             }
@@ -617,274 +1041,10 @@ public class Asm {
         }
         
 //         print symbol table
-        for ( String value : symbolTable.keySet() ) {
-        	System.err.println( value + " " + symbolTable.get( value ) ); 
-        }
-        
-        System.out.flush();
-
-        // Main ignores the value returned, but the "OK" is useful if you decide to to JUnit testing;
-        // run should return either a string containing "ERROR" or a string containing "OK", depending
-        // on whether or not your assembler finds an error in the file it's assembly. Of course, that
-        // leaves open the question of whether the MIPS code generated for a program w/o syntax errors
-        // is semantically correct. You can automate testing that, too, but it takes more work since
-        // you have to run the resulting *.mips file via java cs241.twoints and check its output...
-        return( "OK" );
-    }
-}
-
-/** The various kinds of tokens (ie values of Token.kind). */
-enum Kind {
-    ID,             // Opcode or identifier (use of a label)
-    INT,            // Decimal integer
-    HEXINT,         // Hexadecimal integer
-    REGISTER,       // Register number
-    COMMA,          // Comma
-    LPAREN,         // (
-    RPAREN,         // )
-    LABEL,          // Declaration of a label (with a colon)
-    DOTWORD,        // .word directive
-    WHITESPACE;     // Whitespace
-}
-
-
-/** The various kinds of opcodes that are legal */
-enum OpCode {
-	BLANK,
-    ADD, 			
-    SUB,
-    MULT,
-    MULTU,
-    DIV,
-    DIVU,
-    MFHI,
-    MFLO,
-    LIS,
-    LW,
-    SW,
-    SLT,
-    SLTU,
-    BEQ,
-    BNE,
-    JR,
-    JALR;
-}
-
-/** The representation of a token. */
-class Token {
-    
-    public Kind   kind;   // The kind of token.
-    public String lexeme; // String representation of the actual token in the source code.
-
-    public Token( Kind kind, String lexeme ) {
-        this.kind   = kind;
-        this.lexeme = lexeme;
-    }
-
-    public String toString() {
-        return kind + " {" + lexeme + "}";
-    }
-
-    /** Returns an integer representation of the token. For tokens of kind
-     *  INT (decimal integer constant) and HEXINT (hexadecimal integer
-     *  constant), returns the integer constant. For tokens of kind
-     *  REGISTER, returns the register number.
-     */
-    public int toInt() {
-        if(      kind == Kind.INT      ) return parseLiteral( lexeme,              10, 32 );
-        else if( kind == Kind.HEXINT   ) return parseLiteral( lexeme.substring(2), 16, 32 );
-        else if( kind == Kind.REGISTER ) return parseLiteral( lexeme.substring(1), 10,  5 );
-        else {
-            System.err.println( "ERROR in to-int conversion." );
-            System.exit(1);
-            return 0;
-        }
-    }
-    
-    private int parseLiteral( String s, int base, int bits ) {
-        BigInteger x = new BigInteger( s, base );
-        if( x.signum() > 0 ) {
-            if( x.bitLength() > bits ) {
-                System.err.println( "ERROR in parsing: constant out of range: " + s );
-                System.exit(1);
-            }
-        } else if( x.signum() < 0 ) {
-            if( x.negate().bitLength() > bits-1
-                    && x.negate().subtract(new BigInteger("1")).bitLength() > bits-1 ) {
-                System.err.println( "ERROR in parsing: constant out of range: " + s );
-                System.exit(1);
-            }
-        }
-        return (int) (x.longValue() & ((1L << bits) - 1));
-    }
-}
-
-// Lexer -- implements a DFA that partitions an input line into a list of tokens.
-// DFAs will be discussed Lectures 10, 11 and 12 and Assignment 5.
-class Lexer {
-
-    public Lexer() {
-        
-        CharSet whitespace    = new Chars( "\t\n\r " );
-        CharSet letters       = new Chars( "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz"           );
-        CharSet lettersDigits = new Chars( "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789" );
-        CharSet digits        = new Chars( "0123456789"                                                     );
-        CharSet hexDigits     = new Chars( "0123456789ABCDEFabcdef"                                         );
-        CharSet oneToNine     = new Chars( "123456789"                                                      );
-        CharSet all           = new AllChars();
-
-        /** The handling of whitespace is tricky. There are two things you should figure out:
-         *  (a) how and why all of the characters following // are swallowed up w/o returning a token;
-         *  (b) how the appearance of one or more whitespace characters causes this Lexer to cease
-         *      building up an ID or keyword, which is then appended to the list of tokens found in
-         *      the line, and start scanning for another token.      
-        **/
-
-        table = new Transition[] {
-                new Transition( State.START,    whitespace,     State.WHITESPACE ),
-                new Transition( State.START,    letters,        State.ID         ),
-                new Transition( State.ID,       lettersDigits,  State.ID         ),
-                new Transition( State.START,    oneToNine,      State.INT        ),
-                new Transition( State.INT,      digits,         State.INT        ),
-                new Transition( State.START,    new Chars("-"), State.MINUS      ),
-                new Transition( State.MINUS,    digits,         State.INT        ),
-                new Transition( State.START,    new Chars(","), State.COMMA      ),
-                new Transition( State.START,    new Chars("("), State.LPAREN     ),
-                new Transition( State.START,    new Chars(")"), State.RPAREN     ),
-                new Transition( State.START,    new Chars("$"), State.DOLLAR     ),
-                new Transition( State.DOLLAR,   digits,         State.REGISTER   ),
-                new Transition( State.REGISTER, digits,         State.REGISTER   ),
-                new Transition( State.START,    new Chars("0"), State.ZERO       ),
-                new Transition( State.ZERO,     new Chars("x"), State.ZEROX      ),
-                new Transition( State.ZERO,     digits,         State.INT        ),
-                new Transition( State.ZEROX,    hexDigits,      State.HEXINT     ),
-                new Transition( State.HEXINT,   hexDigits,      State.HEXINT     ),
-                new Transition( State.ID,       new Chars(":"), State.LABEL      ),
-                new Transition( State.START,    new Chars(";"), State.COMMENT    ),
-                new Transition( State.START,    new Chars("."), State.DOT        ),
-                new Transition( State.DOT,      new Chars("w"), State.DOTW       ),
-                new Transition( State.DOTW,     new Chars("o"), State.DOTWO      ),
-                new Transition( State.DOTWO,    new Chars("r"), State.DOTWOR     ),
-                new Transition( State.DOTWOR,   new Chars("d"), State.DOTWORD    ),
-                new Transition( State.COMMENT,  all,            State.COMMENT    )
-        };
-    }
-
-    /** Partitions the line passed in as input into an array of tokens.
-     *  The array of tokens is returned.
-     */
-    public Token[] scan( String input ) {
-
-        List<Token> ret = new ArrayList<Token>();
-
-        if( input.length() == 0 ) return new Token[0];
-        int   i          = 0;
-        int   startIndex = 0;
-        State state      = State.START;
-
-        while( true ) {
-
-            Transition trans = null;
-
-            if( i < input.length() ) trans = findTransition( state, input.charAt(i) );
-            
-            if( trans == null ) {
-                // No more transitions possible
-                if( ! state.isFinal() ) {
-                    System.err.println( "ERROR in lexing after reading " + input.substring(0,i) );
-                    System.exit(1);
-                }
-                if( state.kind != Kind.WHITESPACE ) {
-                    ret.add( new Token(state.kind,input.substring(startIndex,i)) );
-                }
-                startIndex = i;
-                state      = State.START;
-                if( i >= input.length() ) break;
-            } else {
-                state      = trans.toState;
-                i++;
-            }
+        if ( trace ) {
+	        for ( String value : symbolTable.keySet() ) {
+	        	System.err.println( value + " " + symbolTable.get( value ) ); 
+	        }
         }
-        
-        return ret.toArray( new Token[ret.size()] );
     }
-
-    ///////////////////////////////////////////////////////////////
-    // END OF PUBLIC METHODS
-    ///////////////////////////////////////////////////////////////
-
-    private Transition findTransition( State state, char c ) {
-        for( int j = 0; j < table.length; j++ ) {
-            Transition trans = table[j];
-            if( trans.fromState == state && trans.chars.contains(c) ) {
-                return trans;
-            }
-        }
-        return null;
-    }
-
-    // Final states or those whose kind (of token) is not null, except for WHITESPACE (a special case).
-    private static enum State {
-        START(      null            ),
-        DOLLAR(     null            ),
-        MINUS(      null            ),
-        REGISTER(   Kind.REGISTER   ),
-        INT(        Kind.INT        ),
-        ID(         Kind.ID         ),
-        LABEL(      Kind.LABEL      ),
-        COMMA(      Kind.COMMA      ),
-        LPAREN(     Kind.LPAREN     ),
-        RPAREN(     Kind.RPAREN     ),
-        ZERO(       Kind.INT        ),
-        ZEROX(      null            ),
-        HEXINT(     Kind.HEXINT     ),
-        COMMENT(    Kind.WHITESPACE ),
-        DOT(        null            ),
-        DOTW(       null            ),
-        DOTWO(      null            ),
-        DOTWOR(     null            ),
-        DOTWORD(    Kind.DOTWORD    ),
-        WHITESPACE( Kind.WHITESPACE );
-
-        Kind kind;
-
-        State( Kind kind ) {
-            this.kind = kind;
-        }
-
-        boolean isFinal() {
-            return kind != null;
-        }
-    }
-
-    private interface CharSet {
-        public boolean contains( char newC );
-    }
-
-    private class Chars implements CharSet {
-        private String chars;
-        public  Chars( String chars ) { this.chars = chars; }
-        public  boolean contains( char newC ) {
-            return chars.indexOf(newC) >= 0;
-        }
-    }
-
-    private class AllChars implements CharSet {
-        public boolean contains( char newC ) {
-            return true;
-        }
-    }
-
-    private class Transition {
-        State   fromState;
-        CharSet chars;
-        State   toState;
-        Transition( State fromState, CharSet chars, State toState ) {
-            this.fromState = fromState;
-            this.chars     = chars;
-            this.toState   = toState;
-        }
-    }
-    
-    private Transition[] table;
 }
@@ -0,0 +1,10 @@
+/** Thrown by the checks in Asm, Token and Lexer when the input is not valid MIPS assembly.
+ *  The message is what used to be printed to System.err just before exiting.
+ */
+class AsmError extends Error {
+    private static final long serialVersionUID = 1L;
+
+    public AsmError( String message ) {
+        super( message );
+    }
+}
@@ -0,0 +1,154 @@
+import java.util.*;
+import java.io.*;
+import java.nio.channels.*;
+import java.util.concurrent.*;
+
+/** Assembles many source files at once, eg
+ *       java Asm a.asm b.asm src/
+ *  Directories are searched (recursively) for *.asm, *.asm.gz and *.mipb (BinaryProgram) files. Each file is assembled by its own Asm
+ *  on a work-stealing ForkJoinPool with one thread per processor, and its output written next to
+ *  it with the emitter's extension (a.asm -> a.mips). A file that fails to assemble doesn't stop
+ *  the others; once all are done a summary with the status and time of each file is printed.
+ *  Files that would write the same output (a.asm and a.asm.gz, say) all fail without being assembled.
+ */
+class Batch {
+
+    /** Assembles every file named by (or found under) paths; returns true if all of them succeeded. */
+    public static boolean run( String[] paths, Emitter emitter, boolean optimize ) {
+        List<File> files = new ArrayList<File>();
+        for( String path : paths ) {
+            collect( new File( path ), files );
+        }
+
+        String[] status = new String[ files.size() ];
+        long[]   nanos  = new long[ files.size() ];
+        long     start  = System.nanoTime();
+        clashes( files, emitter, status );
+
+        ForkJoinPool pool = new ForkJoinPool( Runtime.getRuntime().availableProcessors() );
+        pool.invoke( new Files( files, emitter, optimize, status, nanos, 0, files.size() ) );
+        pool.shutdown();
+
+        long wall   = System.nanoTime() - start;
+        int  failed = 0;
+        for( int i = 0; i < files.size(); i++ ) {
+            boolean ok = status[i].equals( "OK" );
+            if( ! ok ) failed++;
+            System.out.printf( "%-5s %9.1f ms  %s%s%n", ok ? "OK" : "FAIL", nanos[i] / 1e6, files.get(i),
+                               ok ? "" : ": " + status[i] );
+        }
+        System.out.printf( "%d files, %d assembled, %d failed, %.1f ms%n",
+                           files.size(), files.size() - failed, failed, wall / 1e6 );
+        System.out.flush();
+        return failed == 0;
+    }
+
+    // adds file, or every source file under it if it is a directory
+    private static void collect( File file, List<File> files ) {
+        if( file.isDirectory() ) {
+            File[] children = file.listFiles();
+            if( children == null ) return;
+            Arrays.sort( children );
+            for( File child : children ) {
+                String name = child.getName();
+                if( child.isDirectory() || name.endsWith( ".asm" ) || name.endsWith( ".asm.gz" ) || name.endsWith( ".mipb" ) ) {
+                    collect( child, files );
+                }
+            }
+        } else {
+            files.add( file );
+        }
+    }
+
+    // fails, up front, every file whose output another file would also write (a.asm and a.mipb both
+    // make a.mips); their tasks would otherwise race to write it
+    private static void clashes( List<File> files, Emitter emitter, String[] status ) {
+        Map<String,List<Integer>> byOutput = new HashMap<String,List<Integer>>();
+        for( int i = 0; i < files.size(); i++ ) {
+            String output = outputFile( files.get(i), emitter ).toPath().toAbsolutePath().normalize().toString();
+            List<Integer> same = byOutput.get( output );
+            if( same == null ) byOutput.put( output, same = new ArrayList<Integer>() );
+            same.add( i );
+        }
+        for( Map.Entry<String,List<Integer>> entry : byOutput.entrySet() ) {
+            List<Integer> same = entry.getValue();
+            if( same.size() < 2 ) continue;
+            for( int i : same ) {
+                int other = same.get(0) == i ? same.get(1) : same.get(0);
+                status[i] = "ERROR, " + files.get( other ) + " would also write " + outputFile( files.get(i), emitter );
+            }
+        }
+    }
+
+    // assembles files[from..to), splitting the range in half until there's one file per task
+    private static class Files extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final List<File> files;
+        private final Emitter    emitter;
+        private final boolean    optimize;
+        private final String[]   status;
+        private final long[]     nanos;
+        private final int        from, to;
+
+        Files( List<File> files, Emitter emitter, boolean optimize, String[] status, long[] nanos, int from, int to ) {
+            this.files    = files;
+            this.emitter  = emitter;
+            this.optimize = optimize;
+            this.status   = status;
+            this.nanos    = nanos;
+            this.from     = from;
+            this.to       = to;
+        }
+
+        protected void compute() {
+            if( to - from > 1 ) {
+                int mid = ( from + to ) >>> 1;
+                invokeAll( new Files( files, emitter, optimize, status, nanos, from, mid ),
+                           new Files( files, emitter, optimize, status, nanos, mid,  to  ) );
+            } else if( to - from == 1 && status[from] == null ) {
+                long start = System.nanoTime();
+                status[from] = assemble( files.get( from ), emitter, optimize );
+                nanos[from]  = System.nanoTime() - start;
+            }
+        }
+    }
+
+    // assembles one file and writes its output; returns "OK" or what went wrong
+    private static String assemble( File source, Emitter emitter, boolean optimize ) {
+        try {
+            Asm    asm    = new Asm( false );
+            asm.setOptimize( optimize );
+            String result;
+            InputStream in = Asm.source( new FileInputStream( source ) );
+            try {
+                result = asm.runAny( in );
+            } finally {
+                in.close();
+            }
+            if( ! result.equals( "OK" ) ) return result;
+
+            FileChannel out = new FileOutputStream( outputFile( source, emitter ) ).getChannel();
+            try {
+                asm.emit( emitter, out );
+            } finally {
+                out.close();
+            }
+            return result;
+        } catch( IOException e ) {
+            return "ERROR, " + e.getMessage();
+        } catch( AsmError e ) {
+            return e.getMessage();
+        } catch( RuntimeException e ) {
+            return "ERROR, " + e;        // a bug in Asm shouldn't take the other files down with it
+        }
+    }
+
+    // something.asm, something.asm.gz or something.mipb -> something.mips (or the emitter's extension)
+    private static File outputFile( File source, Emitter emitter ) {
+        String name = source.getName();
+        if( name.endsWith( ".gz"  ) ) name = name.substring( 0, name.length() - 3 );
+        if( name.endsWith( ".asm" ) || name.endsWith( ".mipb" ) ) name = name.substring( 0, name.lastIndexOf( '.' ) );
+        return new File( source.getParentFile(), name + emitter.extension() );
+    }
+}
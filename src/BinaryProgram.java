@@ -0,0 +1,174 @@
+import java.util.*;
+import java.io.*;
+import java.nio.*;
+
+/** A pre-tokenized program, for compiler back ends that already know every instruction's opcode,
+ *  registers and label references and would otherwise print them as text only for the Lexer to
+ *  parse them back. Asm.runBinary assembles it without lexing or validating any strings.
+ *
+ *  The format is big-endian throughout:
+ *       "MIPB"                            magic number
+ *       u16  version                      1
+ *       u32  label count, then for each   u16 length, that many ASCII bytes of the name
+ *       u32  record count, then for each  12 bytes:
+ *            u8   kind                    OpCode.ordinal() of an instruction, LABEL or WORD
+ *            u8   r1, r2, r3              registers, in the order they are written in assembly
+ *                                         (as for Asm.encode); unused ones are 0
+ *            i32  imm                     lw/sw offset in bytes, branch offset in words, or .word value
+ *            i32  label                   index of the label for a branch or .word, or -1 to use imm;
+ *                                         for a LABEL record, the label defined at this address
+ *  OpCode ordinals are part of the format, so new opcodes must go at the end of OpCode.
+ */
+class BinaryProgram {
+
+    public static final int  LABEL   = 0xFE;
+    public static final int  WORD    = 0xFF;
+    public static final int  VERSION = 1;
+
+    private static final byte[] MAGIC  = { 'M', 'I', 'P', 'B' };
+    private static final int    RECORD = 12;
+
+    // the labels, and the records as columns
+    String[] labels = new String[0];
+    int      count  = 0;
+    byte[]   kinds  = new byte[1024];
+    int[]    regs   = new int[1024];    // r1 << 16 | r2 << 8 | r3
+    int[]    imms   = new int[1024];
+    int[]    refs   = new int[1024];
+
+    private Map<String,Integer> labelIds = new HashMap<String,Integer>();
+
+    /** True if input, which must support mark/reset, starts with the magic number. */
+    public static boolean isBinary( InputStream input ) throws IOException {
+        input.mark( MAGIC.length );
+        byte[] start = new byte[ MAGIC.length ];
+        int    n     = 0;
+        int    r;
+        while( n < start.length && ( r = input.read( start, n, start.length - n ) ) > 0 ) n += r;
+        input.reset();
+        return Arrays.equals( start, MAGIC );
+    }
+
+    /** Reads a program in the format above. */
+    public static BinaryProgram read( InputStream input ) throws IOException {
+        DataInputStream in = new DataInputStream( input );
+        byte[] magic = new byte[ MAGIC.length ];
+        in.readFully( magic );
+        if( ! Arrays.equals( magic, MAGIC ) ) throw new AsmError( "ERROR, not a binary program" );
+        int version = in.readUnsignedShort();
+        if( version != VERSION ) throw new AsmError( "ERROR, unsupported binary program version " + version );
+
+        BinaryProgram program = new BinaryProgram();
+        int labels = in.readInt();
+        if( labels < 0 ) throw new AsmError( "ERROR, invalid label count " + labels );
+        // the table grows as names are actually read, so a bad count can't allocate more than the file holds
+        program.labels = new String[ Math.min( labels, 4096 ) ];
+        for( int i = 0; i < labels; i++ ) {
+            if( i == program.labels.length ) {
+                program.labels = Arrays.copyOf( program.labels, (int) Math.min( labels, i * 2L ) );
+            }
+            byte[] name = new byte[ in.readUnsignedShort() ];
+            in.readFully( name );
+            program.labels[i] = new String( name, "US-ASCII" );
+        }
+
+        // the records are read a block at a time and picked apart with a ByteBuffer
+        int        records = in.readInt();
+        byte[]     block   = new byte[ RECORD * 4096 ];
+        ByteBuffer buffer  = ByteBuffer.wrap( block );
+        while( program.count < records ) {
+            int n = Math.min( records - program.count, 4096 );
+            program.grow( program.count + n );
+            in.readFully( block, 0, n * RECORD );
+            buffer.clear();
+            for( int i = 0; i < n; i++ ) {
+                int c = program.count++;
+                program.kinds[c] = buffer.get();
+                program.regs[c]  = ( ( buffer.get() & 0xFF ) << 16 ) | ( ( buffer.get() & 0xFF ) << 8 ) | ( buffer.get() & 0xFF );
+                program.imms[c]  = buffer.getInt();
+                program.refs[c]  = buffer.getInt();
+                if( program.refs[c] < -1 || program.refs[c] >= program.labels.length ) {
+                    throw new AsmError( "ERROR, record " + c + " refers to label " + program.refs[c] + ", which doesn't exist" );
+                }
+            }
+        }
+        return program;
+    }
+
+    /** Writes the program in the format above. */
+    public void write( OutputStream output ) throws IOException {
+        DataOutputStream out = new DataOutputStream( new BufferedOutputStream( output, 1 << 16 ) );
+        out.write( MAGIC );
+        out.writeShort( VERSION );
+        out.writeInt( labels.length );
+        for( String label : labels ) {
+            byte[] name = label.getBytes( "US-ASCII" );
+            out.writeShort( name.length );
+            out.write( name );
+        }
+        out.writeInt( count );
+        for( int i = 0; i < count; i++ ) {
+            out.writeByte( kinds[i] );
+            out.writeByte( regs[i] >> 16 );
+            out.writeByte( regs[i] >> 8 );
+            out.writeByte( regs[i] );
+            out.writeInt( imms[i] );
+            out.writeInt( refs[i] );
+        }
+        out.flush();
+    }
+
+    ///////////////////////////////////////////////////////////////
+    // Building a program to write, eg in a compiler back end
+    ///////////////////////////////////////////////////////////////
+
+    /** Returns the index of the label with this name, adding it if it's new. */
+    public int label( String name ) {
+        Integer id = labelIds.get( name );
+        if( id == null ) {
+            id = labels.length;
+            labels = Arrays.copyOf( labels, id + 1 );
+            labels[id] = name;
+            labelIds.put( name, id );
+        }
+        return id;
+    }
+
+    /** Defines label at the current address. */
+    public void define( int label ) {
+        add( LABEL, 0, 0, 0, 0, label );
+    }
+
+    /** Adds an instruction; label is -1 unless it is a branch to a label. */
+    public void instruction( OpCode operator, int r1, int r2, int r3, int imm, int label ) {
+        add( operator.ordinal(), r1, r2, r3, imm, label );
+    }
+
+    /** Adds a .word with an integer value. */
+    public void word( int value ) {
+        add( WORD, 0, 0, 0, value, -1 );
+    }
+
+    /** Adds a .word holding the address of label. */
+    public void wordAddress( int label ) {
+        add( WORD, 0, 0, 0, 0, label );
+    }
+
+    private void add( int kind, int r1, int r2, int r3, int imm, int label ) {
+        grow( count + 1 );
+        kinds[count] = (byte) kind;
+        regs[count]  = ( ( r1 & 0xFF ) << 16 ) | ( ( r2 & 0xFF ) << 8 ) | ( r3 & 0xFF );
+        imms[count]  = imm;
+        refs[count]  = label;
+        count++;
+    }
+
+    private void grow( int capacity ) {
+        if( capacity <= kinds.length ) return;
+        int size = Math.max( capacity, kinds.length * 2 );
+        kinds = Arrays.copyOf( kinds, size );
+        regs  = Arrays.copyOf( regs,  size );
+        imms  = Arrays.copyOf( imms,  size );
+        refs  = Arrays.copyOf( refs,  size );
+    }
+}
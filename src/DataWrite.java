@@ -1,13 +1,12 @@
+import java.io.*;
+
 public class DataWrite
 {
-public static void main(String[] args)
+public static void main(String[] args) throws IOException
 {
-	int inst = 0x03e00008; // jr $31
-	System.out.write( (inst >> 24) & 0xFF );
-	System.out.write( (inst >> 16) & 0xFF );
-	System.out.write( (inst >> 8) & 0xFF );
-	System.out.write( inst & 0xFF );
-	System.out.flush(); // Remember to force the stream to
-	// be outputted ("flushing")
+	int[] inst = { 0x03e00008 }; // jr $31
+	// the emitter writes the words big-endian in a single write,
+	// so there is nothing left to flush afterwards
+	Emitter.raw().emit( inst, inst.length, new FileOutputStream( FileDescriptor.out ).getChannel() );
 	}
-}
\ No newline at end of file
+}
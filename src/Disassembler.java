@@ -0,0 +1,236 @@
+import java.util.*;
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.util.concurrent.*;
+
+/** Turns assembled MIPS words back into assembly that Asm accepts, eg
+ *       java Disassembler something.mips [something.sym] > something.asm
+ *       java Disassembler -verify something.mips
+ *
+ *  Words are decoded through two 64-entry tables built from OpCode, one indexed by the opcode
+ *  field and one by the function field of opcode 0. A word is only shown as an instruction if
+ *  Asm.encode gives it back exactly (so unused fields must be zero); anything else, and the word
+ *  after a lis, is shown as a .word. The binary is memory-mapped rather than read.
+ *
+ *  Given a symbol map ("label address" lines, as written by java Asm -s), labels are printed in
+ *  front of the words they name and branches to them use the label instead of an offset.
+ *
+ *  -verify checks the round trip: the image is split into blocks that are disassembled and
+ *  assembled again on a ForkJoinPool, each block compared with the words it came from.
+ */
+public class Disassembler {
+
+    private static final OpCode[] BY_OPCODE = new OpCode[64];
+    private static final OpCode[] BY_FUNCT  = new OpCode[64];
+    private static final String[] MNEMONIC  = new String[ OpCode.values().length ];
+
+    static {
+        for( OpCode operator : OpCode.values() ) {
+            MNEMONIC[ operator.ordinal() ] = operator.name().toLowerCase();
+            if( operator == OpCode.BLANK ) continue;
+            if( operator.opcode == 0 ) BY_FUNCT[ operator.funct ]   = operator;
+            else                       BY_OPCODE[ operator.opcode ] = operator;
+        }
+    }
+
+    private static final int BLOCK = 1 << 16;     // words per -verify task
+
+    private final Map<Integer,List<String>> labels;
+
+    /** labels maps addresses to the labels defined there, or is null. */
+    public Disassembler( Map<Integer,List<String>> labels ) {
+        this.labels = labels;
+    }
+
+    public static final void main( String[] args ) throws IOException {
+        if( args.length == 2 && args[0].equals( "-verify" ) ) {
+            long bad = verify( new File( args[1] ) );
+            System.out.println( bad == 0 ? "OK" : "ERROR, " + bad + " words did not survive the round trip" );
+            System.exit( bad == 0 ? 0 : 1 );
+        }
+        if( args.length < 1 || args.length > 2 ) {
+            System.err.println( "usage: java Disassembler something.mips [something.sym]" );
+            System.err.println( "       java Disassembler -verify something.mips" );
+            System.exit(1);
+        }
+        Disassembler disassembler = new Disassembler( args.length == 2 ? readSymbols( new File( args[1] ) ) : null );
+
+        FileChannel   channel = new FileInputStream( args[0] ).getChannel();
+        OutputStream  out     = new BufferedOutputStream( new FileOutputStream( FileDescriptor.out ), 1 << 16 );
+        long          words   = channel.size() / 4;
+        boolean       data    = false;
+        for( long from = 0; from < words; from += BLOCK ) {
+            int           count = (int) Math.min( BLOCK, words - from );
+            StringBuilder text  = new StringBuilder( count * 20 );
+            data = disassembler.disassemble( map( channel, from, count ), (int) ( from * 4 ), data, text );
+            out.write( text.toString().getBytes( "US-ASCII" ) );
+        }
+        StringBuilder end = new StringBuilder();
+        disassembler.labels( (int) ( words * 4 ), end );             // labels just past the last word
+        out.write( end.toString().getBytes( "US-ASCII" ) );
+        out.flush();
+        channel.close();
+    }
+
+    /** Appends the assembly for the words in image, the first of which is at address, to text.
+     *  data says whether the first word follows a lis; returns whether the word after the last does.
+     */
+    public boolean disassemble( IntBuffer image, int address, boolean data, StringBuilder text ) {
+        while( image.hasRemaining() ) {
+            int word = image.get();
+            labels( address, text );
+            OpCode operator = data ? null : decode( word );
+            if( operator == null ) {
+                text.append( ".word 0x" ).append( Integer.toHexString( word ) ).append( '\n' );
+                data = false;
+            } else {
+                instruction( operator, word, address, text );
+                data = operator == OpCode.LIS;
+            }
+            address += 4;
+        }
+        return data;
+    }
+
+    /** Appends the definitions of the labels at address, if any, to text. */
+    public void labels( int address, StringBuilder text ) {
+        if( labels == null ) return;
+        List<String> here = labels.get( address );
+        if( here == null ) return;
+        for( String label : here ) text.append( label ).append( ":\n" );
+    }
+
+    /** The instruction word encodes, or null if it isn't one Asm would produce. */
+    public static OpCode decode( int word ) {
+        int     opcode   = word >>> 26;
+        OpCode  operator = opcode == 0 ? BY_FUNCT[ word & 0x3F ] : BY_OPCODE[ opcode ];
+        if( operator == null ) return null;
+        int s = ( word >>> 21 ) & 31, t = ( word >>> 16 ) & 31, d = ( word >>> 11 ) & 31;
+        int encoded;
+        switch( operator ) {                  // the registers in the order they are written in assembly
+            case ADD: case SUB: case SLT: case SLTU:       encoded = Asm.encode( operator, d, s, t, word );  break;
+            case MULT: case MULTU: case DIV: case DIVU:    encoded = Asm.encode( operator, s, t, 0, word );  break;
+            case MFHI: case MFLO: case LIS:                encoded = Asm.encode( operator, d, 0, 0, word );  break;
+            case JR: case JALR:                            encoded = Asm.encode( operator, s, 0, 0, word );  break;
+            case BEQ: case BNE:                            encoded = Asm.encode( operator, s, t, 0, word );  break;
+            default: /* LW, SW */                          encoded = Asm.encode( operator, t, s, 0, word );  break;
+        }
+        return encoded == word ? operator : null;
+    }
+
+    ///////////////////////////////////////////////////////////////
+
+    private void instruction( OpCode operator, int word, int address, StringBuilder text ) {
+        int s = ( word >>> 21 ) & 31, t = ( word >>> 16 ) & 31, d = ( word >>> 11 ) & 31;
+        int i = (short) word;
+        text.append( MNEMONIC[ operator.ordinal() ] ).append( " $" );
+        switch( operator ) {
+            case ADD: case SUB: case SLT: case SLTU:
+                text.append( d ).append( ", $" ).append( s ).append( ", $" ).append( t );
+                break;
+            case MULT: case MULTU: case DIV: case DIVU:
+                text.append( s ).append( ", $" ).append( t );
+                break;
+            case MFHI: case MFLO: case LIS:
+                text.append( d );
+                break;
+            case JR: case JALR:
+                text.append( s );
+                break;
+            case BEQ: case BNE:
+                text.append( s ).append( ", $" ).append( t ).append( ", " );
+                List<String> target = labels == null ? null : labels.get( address + 4 + i * 4 );
+                if( target != null ) text.append( target.get(0) );
+                else                 text.append( i );
+                break;
+            default: /* LW, SW */
+                text.append( t ).append( ", " ).append( i ).append( "($" ).append( s ).append( ')' );
+                break;
+        }
+        text.append( '\n' );
+    }
+
+    // maps count words starting at word index from; big-endian, like the file
+    private static IntBuffer map( FileChannel channel, long from, int count ) throws IOException {
+        return channel.map( FileChannel.MapMode.READ_ONLY, from * 4, count * 4L ).asIntBuffer();
+    }
+
+    /** Reads a symbol map of "label address" lines into address -> labels. */
+    public static Map<Integer,List<String>> readSymbols( File file ) throws IOException {
+        Map<Integer,List<String>> labels = new HashMap<Integer,List<String>>();
+        BufferedReader in = new BufferedReader( new FileReader( file ) );
+        try {
+            String line;
+            while( ( line = in.readLine() ) != null ) {
+                String[] fields = line.trim().split( "\\s+" );
+                if( fields.length != 2 ) continue;
+                Integer address = Integer.valueOf( fields[1] );
+                List<String> here = labels.get( address );
+                if( here == null ) labels.put( address, here = new ArrayList<String>() );
+                here.add( fields[0] );
+            }
+        } finally {
+            in.close();
+        }
+        return labels;
+    }
+
+    ///////////////////////////////////////////////////////////////
+    // Round trip verification
+    ///////////////////////////////////////////////////////////////
+
+    /** Disassembles and reassembles the binary in file in parallel; returns the number of words that differ. */
+    public static long verify( File file ) throws IOException {
+        FileChannel channel = new FileInputStream( file ).getChannel();
+        try {
+            long words = channel.size() / 4;
+            return new ForkJoinPool().invoke( new RoundTrip( channel, 0, words ) );
+        } finally {
+            channel.close();
+        }
+    }
+
+    // checks words [from, to) of the image, splitting the range until it is at most one BLOCK
+    private static class RoundTrip extends RecursiveTask<Long> {
+        private static final long serialVersionUID = 1L;
+
+        private final FileChannel channel;
+        private final long        from, to;
+
+        RoundTrip( FileChannel channel, long from, long to ) {
+            this.channel = channel;
+            this.from    = from;
+            this.to      = to;
+        }
+
+        protected Long compute() {
+            if( to - from > BLOCK ) {
+                long      mid   = ( from + to ) >>> 1;
+                RoundTrip right = new RoundTrip( channel, mid, to );
+                right.fork();
+                return new RoundTrip( channel, from, mid ).compute() + right.join();
+            }
+            try {
+                IntBuffer original = map( channel, from, (int) ( to - from ) );
+
+                // no labels: offsets stay numeric, so the block assembles on its own
+                StringBuilder text = new StringBuilder( original.remaining() * 20 );
+                new Disassembler( null ).disassemble( original.duplicate(), (int) ( from * 4 ), false, text );
+
+                Asm    asm    = new Asm( false );
+                String result = asm.run( new ByteArrayInputStream( text.toString().getBytes( "US-ASCII" ) ) );
+                if( ! result.equals( "OK" ) ) return to - from;
+                int[] again = asm.words();
+
+                long differ = Math.abs( again.length - original.remaining() );
+                for( int i = 0; i < Math.min( again.length, original.remaining() ); i++ ) {
+                    if( again[i] != original.get( i ) ) differ++;
+                }
+                return differ;
+            } catch( IOException e ) {
+                throw new AsmError( "ERROR, could not read the image: " + e.getMessage() );
+            }
+        }
+    }
+}
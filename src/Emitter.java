@@ -0,0 +1,183 @@
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+
+/** Writes an assembled image of MIPS words in some output format.
+ *
+ *  Every emitter formats the whole image into one ByteBuffer and hands it to
+ *  the channel in a single write, so a large image costs about one system call
+ *  instead of one per byte as System.out.write did.
+ *
+ *  The emitters can be chosen on the command line by name, eg
+ *       java Asm -f ihex something.asm > something.hex
+**/
+abstract class Emitter {
+
+    /** Writes the first count words of the image to out. */
+    public abstract void emit( int[] words, int count, WritableByteChannel out ) throws IOException;
+
+    /** The file name extension Batch gives to output in this format, eg ".mips". */
+    public abstract String extension();
+
+    /** Returns the default emitter, for raw big-endian words. */
+    public static Emitter raw() {
+        return new RawEmitter();
+    }
+
+    /** Returns the emitter for one of the format names raw, ihex, hex or elf. */
+    public static Emitter forName( String format ) {
+        if( format.equals( "raw"  ) ) return new RawEmitter();
+        if( format.equals( "ihex" ) ) return new IntelHexEmitter();
+        if( format.equals( "hex"  ) ) return new HexTextEmitter();
+        if( format.equals( "elf"  ) ) return new ElfEmitter();
+        throw new IllegalArgumentException( "Unknown output format \"" + format + "\"; expected raw, ihex, hex or elf." );
+    }
+
+    // channel writes may be partial, so keep going until the buffer is drained
+    protected static void drain( ByteBuffer buffer, WritableByteChannel out ) throws IOException {
+        buffer.flip();
+        while( buffer.hasRemaining() ) {
+            out.write( buffer );
+        }
+    }
+
+    private static final byte[] HEX = "0123456789ABCDEF".getBytes();
+
+    // appends the low (digits * 4) bits of value as upper case hex
+    protected static void putHex( ByteBuffer buffer, int value, int digits ) {
+        for( int shift = ( digits - 1 ) * 4; shift >= 0; shift -= 4 ) {
+            buffer.put( HEX[ ( value >>> shift ) & 0xF ] );
+        }
+    }
+}
+
+/** Raw big-endian words, the format MIPS simulators such as java cs241.twoints load. */
+class RawEmitter extends Emitter {
+    public String extension() { return ".mips"; }
+
+    public void emit( int[] words, int count, WritableByteChannel out ) throws IOException {
+        // a direct buffer is handed to the kernel as is, without a copy into a temporary one
+        ByteBuffer buffer = ByteBuffer.allocateDirect( count * 4 );   // big-endian by default
+        buffer.asIntBuffer().put( words, 0, count );
+        buffer.position( count * 4 );
+        drain( buffer, out );
+    }
+}
+
+/** Intel HEX: 16 data bytes per record, with an extended linear address record
+ *  at the start of every 64K block, terminated by an end-of-file record.
+ */
+class IntelHexEmitter extends Emitter {
+
+    private static final int RECORD_BYTES = 16;
+
+    public String extension() { return ".hex"; }
+
+    public void emit( int[] words, int count, WritableByteChannel out ) throws IOException {
+        int bytes   = count * 4;
+        int records = ( bytes + RECORD_BYTES - 1 ) / RECORD_BYTES;
+        int blocks  = ( bytes + 0xFFFF ) / 0x10000;
+        // ":LLAAAATT" + data + "CC\n" per data record, 16 per address record, 12 for EOF
+        ByteBuffer buffer = ByteBuffer.allocateDirect( records * 12 + bytes * 2 + blocks * 16 + 12 );
+
+        for( int address = 0; address < bytes; address += RECORD_BYTES ) {
+            if( ( address & 0xFFFF ) == 0 ) {
+                int upper = address >>> 16;
+                record( buffer, 0, 0x04, new int[] { upper >>> 8, upper & 0xFF } );
+            }
+            int   length = Math.min( RECORD_BYTES, bytes - address );
+            int[] data   = new int[length];
+            for( int j = 0; j < length; j++ ) {
+                int word = words[ ( address + j ) >> 2 ];
+                data[j]  = ( word >>> ( 24 - 8 * ( ( address + j ) & 3 ) ) ) & 0xFF;
+            }
+            record( buffer, address & 0xFFFF, 0x00, data );
+        }
+        record( buffer, 0, 0x01, new int[0] );
+        drain( buffer, out );
+    }
+
+    private void record( ByteBuffer buffer, int address, int type, int[] data ) {
+        int sum = data.length + ( address >>> 8 ) + ( address & 0xFF ) + type;
+        buffer.put( (byte) ':' );
+        putHex( buffer, data.length, 2 );
+        putHex( buffer, address,     4 );
+        putHex( buffer, type,        2 );
+        for( int j = 0; j < data.length; j++ ) {
+            putHex( buffer, data[j], 2 );
+            sum += data[j];
+        }
+        putHex( buffer, -sum, 2 );    // two's complement of the byte sum
+        buffer.put( (byte) '\n' );
+    }
+}
+
+/** One word per line as 8 hex digits, the memory image format read by
+ *  Verilog's $readmemh and most hardware simulators.
+ */
+class HexTextEmitter extends Emitter {
+    public String extension() { return ".mem"; }
+
+    public void emit( int[] words, int count, WritableByteChannel out ) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect( count * 9 );
+        for( int i = 0; i < count; i++ ) {
+            putHex( buffer, words[i], 8 );
+            buffer.put( (byte) '\n' );
+        }
+        drain( buffer, out );
+    }
+}
+
+/** A minimal big-endian ELF32 MIPS executable: the file header, one PT_LOAD
+ *  program header and the image, with no section headers. The image is loaded
+ *  at virtual address 0, which is where the assembler assumes the program starts
+ *  (labels used in .word directives are absolute addresses), and execution
+ *  starts at its first word.
+ */
+class ElfEmitter extends Emitter {
+
+    private static final int EHDR_SIZE   = 52;
+    private static final int PHDR_SIZE   = 32;
+    private static final int PAGE        = 0x1000;   // the image starts on a page boundary in the file
+    private static final int EM_MIPS     = 8;
+    private static final int ET_EXEC     = 2;
+    private static final int PT_LOAD     = 1;
+    private static final int PF_RWX      = 7;        // .word data may be written by the program
+
+    public String extension() { return ".elf"; }
+
+    public void emit( int[] words, int count, WritableByteChannel out ) throws IOException {
+        int        size   = count * 4;
+        ByteBuffer buffer = ByteBuffer.allocateDirect( PAGE + size );   // zero filled, big-endian
+
+        // e_ident: magic, ELFCLASS32, ELFDATA2MSB, EV_CURRENT, System V ABI, padding
+        buffer.put( new byte[] { 0x7F, 'E', 'L', 'F', 1, 2, 1, 0, 0, 0, 0, 0, 0, 0, 0, 0 } );
+        buffer.putShort( (short) ET_EXEC );
+        buffer.putShort( (short) EM_MIPS );
+        buffer.putInt( 1 );                     // e_version
+        buffer.putInt( 0 );                     // e_entry
+        buffer.putInt( EHDR_SIZE );             // e_phoff
+        buffer.putInt( 0 );                     // e_shoff
+        buffer.putInt( 0 );                     // e_flags: MIPS I
+        buffer.putShort( (short) EHDR_SIZE );   // e_ehsize
+        buffer.putShort( (short) PHDR_SIZE );   // e_phentsize
+        buffer.putShort( (short) 1 );           // e_phnum
+        buffer.putShort( (short) 40 );          // e_shentsize
+        buffer.putShort( (short) 0 );           // e_shnum
+        buffer.putShort( (short) 0 );           // e_shstrndx
+
+        buffer.putInt( PT_LOAD );               // p_type
+        buffer.putInt( PAGE );                  // p_offset
+        buffer.putInt( 0 );                     // p_vaddr
+        buffer.putInt( 0 );                     // p_paddr
+        buffer.putInt( size );                  // p_filesz
+        buffer.putInt( size );                  // p_memsz
+        buffer.putInt( PF_RWX );                // p_flags
+        buffer.putInt( PAGE );                  // p_align
+
+        buffer.position( PAGE );
+        buffer.asIntBuffer().put( words, 0, count );
+        buffer.position( PAGE + size );
+        drain( buffer, out );
+    }
+}
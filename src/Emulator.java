@@ -0,0 +1,152 @@
+import java.io.*;
+
+/** Runs an assembled program in process, the way the CS 241 mips tools do: the program is loaded
+ *  at address 0, $30 starts at the top of memory and $31 at a return address that stops the run
+ *  when jumped to (so the program ends with jr $31), a lw from 0xffff0004 reads a byte of input
+ *  (-1 at the end) and a sw to 0xffff000c writes the low byte of the register as output.
+ *
+ *  It keeps count of how many times the word at each address of the program was executed, for
+ *  the Profile; instructions executed outside the program (eg code it wrote itself) only add to
+ *  outside(). Anything the tools would stop for (an unknown instruction, an unaligned or out of
+ *  range address, division by zero, too many steps) throws an EmulatorError.
+ */
+class Emulator {
+
+    public static final int RETURN = 0x8123456c;
+    public static final int INPUT  = 0xffff0004;
+    public static final int OUTPUT = 0xffff000c;
+
+    private final int[]  memory;
+    private final int[]  reg = new int[32];
+    private int          hi, lo;
+    private int          pc = 0;
+
+    private final long[] counts;              // executions of each word of the program
+    private long         outside = 0;
+    private long         steps   = 0;
+
+    /** Loads program into a memory of memoryBytes bytes, which must be a multiple of 4. */
+    public Emulator( int[] program, int memoryBytes ) {
+        if( program.length * 4L > memoryBytes ) throw new EmulatorError( "ERROR, program does not fit in memory" );
+        memory = new int[ memoryBytes / 4 ];
+        System.arraycopy( program, 0, memory, 0, program.length );
+        counts = new long[ program.length ];
+        reg[30] = memoryBytes;
+        reg[31] = RETURN;
+    }
+
+    public void setRegister( int r, int value ) {
+        if( r != 0 ) reg[r] = value;
+    }
+
+    public int register( int r ) {
+        return reg[r];
+    }
+
+    public long[] counts() {
+        return counts;
+    }
+
+    public long outside() {
+        return outside;
+    }
+
+    public long steps() {
+        return steps;
+    }
+
+    /** Runs until the program returns, or throws once limit instructions have been executed. */
+    public void run( InputStream in, OutputStream out, long limit ) throws IOException {
+        int[] reg = this.reg;
+        while( pc != RETURN ) {
+            if( steps++ == limit ) throw new EmulatorError( "ERROR, still running after " + limit + " instructions" );
+            int index = word( pc );
+            if( index < counts.length ) counts[index]++;
+            else                        outside++;
+
+            int w = memory[index];
+            int s = ( w >>> 21 ) & 31, t = ( w >>> 16 ) & 31, d = ( w >>> 11 ) & 31;
+            int i = (short) w;
+            pc += 4;
+            switch( w >>> 26 ) {
+                case 0:
+                    switch( w & 0x3F ) {
+                        case 0x20: reg[d] = reg[s] + reg[t];                    break;     // add
+                        case 0x22: reg[d] = reg[s] - reg[t];                    break;     // sub
+                        case 0x2A: reg[d] = reg[s] < reg[t] ? 1 : 0;            break;     // slt
+                        case 0x2B: reg[d] = ( reg[s] ^ Integer.MIN_VALUE ) < ( reg[t] ^ Integer.MIN_VALUE ) ? 1 : 0;  break;  // sltu
+                        case 0x10: reg[d] = hi;                                 break;     // mfhi
+                        case 0x12: reg[d] = lo;                                 break;     // mflo
+                        case 0x14: reg[d] = memory[ word( pc ) ]; pc += 4;      break;     // lis
+                        case 0x18: {                                                       // mult
+                            long p = (long) reg[s] * reg[t];
+                            hi = (int) ( p >>> 32 );
+                            lo = (int) p;
+                            break;
+                        }
+                        case 0x19: {                                                       // multu
+                            long p = ( reg[s] & 0xffffffffL ) * ( reg[t] & 0xffffffffL );
+                            hi = (int) ( p >>> 32 );
+                            lo = (int) p;
+                            break;
+                        }
+                        case 0x1A:                                                         // div
+                            if( reg[t] == 0 ) throw new EmulatorError( "ERROR, division by zero at " + hex( pc - 4 ) );
+                            lo = reg[s] / reg[t];
+                            hi = reg[s] % reg[t];
+                            break;
+                        case 0x1B: {                                                       // divu
+                            if( reg[t] == 0 ) throw new EmulatorError( "ERROR, division by zero at " + hex( pc - 4 ) );
+                            long a = reg[s] & 0xffffffffL, b = reg[t] & 0xffffffffL;
+                            lo = (int) ( a / b );
+                            hi = (int) ( a % b );
+                            break;
+                        }
+                        case 0x08: pc = reg[s];                                 break;     // jr
+                        case 0x09: {                                                       // jalr
+                            int target = reg[s];
+                            reg[31] = pc;
+                            pc = target;
+                            break;
+                        }
+                        default: invalid( w );
+                    }
+                    break;
+                case 35: {                                                                 // lw
+                    int address = reg[s] + i;
+                    reg[t] = address == INPUT ? in.read() : memory[ word( address ) ];
+                    break;
+                }
+                case 43: {                                                                 // sw
+                    int address = reg[s] + i;
+                    if( address == OUTPUT ) out.write( reg[t] );
+                    else                    memory[ word( address ) ] = reg[t];
+                    break;
+                }
+                case 4: if( reg[s] == reg[t] ) pc += i * 4;             break;     // beq
+                case 5: if( reg[s] != reg[t] ) pc += i * 4;             break;     // bne
+                default: invalid( w );
+            }
+            reg[0] = 0;
+        }
+        out.flush();
+    }
+
+    ///////////////////////////////////////////////////////////////
+
+    // the index in memory of the word at address
+    private int word( int address ) {
+        if( ( address & 3 ) != 0 || ( address >>> 2 ) >= memory.length ) {
+            throw new EmulatorError( "ERROR, bad address " + hex( address ) + " after " + hex( pc - 4 ) );
+        }
+        return address >>> 2;
+    }
+
+    private void invalid( int w ) {
+        throw new EmulatorError( "ERROR, invalid instruction " + hex( w ) + " at " + hex( pc - 4 ) );
+    }
+
+    private static String hex( int value ) {
+        return "0x" + Integer.toHexString( value );
+    }
+}
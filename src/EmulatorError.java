@@ -0,0 +1,10 @@
+/** Thrown by the Emulator when the program it runs does something the CS 241 tools would stop
+ *  for, eg an invalid instruction or a bad address. The message says what and where.
+ */
+class EmulatorError extends Error {
+    private static final long serialVersionUID = 1L;
+
+    public EmulatorError( String message ) {
+        super( message );
+    }
+}
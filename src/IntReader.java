@@ -0,0 +1,62 @@
+import java.io.*;
+
+/** Reads whitespace-separated decimal integers straight out of a byte buffer.
+ *  Replaces Scanner.next() + new Integer(...), which allocate a String and
+ *  an Integer for every value read.
+ */
+class IntReader {
+
+    private final InputStream in;
+    private final byte[]      buf = new byte[1 << 16];
+    private int               pos = 0;
+    private int               end = 0;
+
+    public IntReader( InputStream in ) {
+        this.in = in;
+    }
+
+    /** Skips whitespace; returns true if another integer follows. */
+    public boolean hasNext() throws IOException {
+        int c;
+        while( ( c = peek() ) != -1 && c <= ' ' ) pos++;
+        return c != -1;
+    }
+
+    /** Parses the next integer. Accepts an optional sign, like Integer.parseInt. */
+    public int next() throws IOException {
+        if( ! hasNext() ) throw new EOFException();
+        boolean negative = false;
+        int     c        = peek();
+        if( c == '-' || c == '+' ) {
+            negative = c == '-';
+            pos++;
+        }
+        // accumulate as a negative number so that Integer.MIN_VALUE fits
+        long value  = 0;
+        int  digits = 0;
+        while( ( c = peek() ) > ' ' ) {
+            if( c < '0' || c > '9' ) throw new NumberFormatException( "bad digit '" + (char) c + "'" );
+            value = value * 10 - ( c - '0' );
+            if( value < Integer.MIN_VALUE ) throw new NumberFormatException( "integer out of range" );
+            digits++;
+            pos++;
+        }
+        if( digits == 0 ) throw new NumberFormatException( "sign without digits" );
+        if( negative ) return (int) value;
+        if( value == Integer.MIN_VALUE ) throw new NumberFormatException( "integer out of range" );
+        return (int) -value;
+    }
+
+    // returns the next byte without consuming it, refilling the buffer as needed; -1 at end of input
+    private int peek() throws IOException {
+        if( pos == end ) {
+            end = in.read( buf, 0, buf.length );
+            pos = 0;
+            if( end <= 0 ) {
+                end = 0;
+                return -1;
+            }
+        }
+        return buf[pos] & 0xFF;
+    }
+}
@@ -0,0 +1,42 @@
+import java.io.*;
+
+/** Writes integers, one per line, through a single byte buffer.
+ *  Replaces System.out.println(int), which formats through a String and
+ *  flushes the underlying stream a line at a time.
+ */
+class IntWriter {
+
+    private final OutputStream out;
+    private final byte[]       buf = new byte[1 << 16];
+    private int                pos = 0;
+
+    public IntWriter( OutputStream out ) {
+        this.out = out;
+    }
+
+    /** Appends the decimal form of i followed by a newline. */
+    public void println( int i ) throws IOException {
+        if( buf.length - pos < 12 ) flush();   // "-2147483648\n" is the longest line
+        if( i < 0 ) {
+            buf[pos++] = '-';
+        } else {
+            i = -i;                            // work with negatives so that MIN_VALUE fits
+        }
+        int start = pos;
+        do {
+            buf[pos++] = (byte) ( '0' - i % 10 );
+            i /= 10;
+        } while( i != 0 );
+        // digits were produced least significant first
+        for( int lo = start, hi = pos - 1; lo < hi; lo++, hi-- ) {
+            byte b = buf[lo]; buf[lo] = buf[hi]; buf[hi] = b;
+        }
+        buf[pos++] = '\n';
+    }
+
+    public void flush() throws IOException {
+        out.write( buf, 0, pos );
+        out.flush();
+        pos = 0;
+    }
+}
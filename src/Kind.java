@@ -0,0 +1,18 @@
+/** The various kinds of tokens (ie values of Token.kind). */
+enum Kind {
+    ID,             // Opcode or identifier (use of a label)
+    INT,            // Decimal integer
+    HEXINT,         // Hexadecimal integer
+    REGISTER,       // Register number
+    COMMA,          // Comma
+    LPAREN,         // (
+    RPAREN,         // )
+    LABEL,          // Declaration of a label (with a colon)
+    DOTWORD,        // .word directive
+    DOTSPACE,       // .space directive
+    DOTFILL,        // .fill directive
+    DOTASCII,       // .ascii directive
+    DOTASCIIZ,      // .asciiz directive
+    STRING,         // String literal in double quotes
+    WHITESPACE;     // Whitespace
+}
@@ -0,0 +1,304 @@
+import java.util.*;
+import java.nio.*;
+import java.nio.charset.*;
+
+// Lexer -- implements a DFA that partitions an input line into a list of tokens.
+// DFAs will be discussed Lectures 10, 11 and 12 and Assignment 5.
+class Lexer {
+
+    public Lexer() {
+        
+        CharSet whitespace    = new Chars( "\t\n\r " );
+        CharSet letters       = new Chars( "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz"           );
+        CharSet lettersDigits = new Chars( "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789" );
+        CharSet digits        = new Chars( "0123456789"                                                     );
+        CharSet hexDigits     = new Chars( "0123456789ABCDEFabcdef"                                         );
+        CharSet oneToNine     = new Chars( "123456789"                                                      );
+        CharSet all           = new AllChars();
+        CharSet stringChars   = new NotChars( "\"\\\n" );
+
+        /** The handling of whitespace is tricky. There are two things you should figure out:
+         *  (a) how and why all of the characters following // are swallowed up w/o returning a token;
+         *  (b) how the appearance of one or more whitespace characters causes this Lexer to cease
+         *      building up an ID or keyword, which is then appended to the list of tokens found in
+         *      the line, and start scanning for another token.      
+        **/
+
+        table = new Transition[] {
+                new Transition( State.START,    whitespace,     State.WHITESPACE ),
+                new Transition( State.START,    letters,        State.ID         ),
+                new Transition( State.ID,       lettersDigits,  State.ID         ),
+                new Transition( State.START,    oneToNine,      State.INT        ),
+                new Transition( State.INT,      digits,         State.INT        ),
+                new Transition( State.START,    new Chars("-"), State.MINUS      ),
+                new Transition( State.MINUS,    digits,         State.INT        ),
+                new Transition( State.START,    new Chars(","), State.COMMA      ),
+                new Transition( State.START,    new Chars("("), State.LPAREN     ),
+                new Transition( State.START,    new Chars(")"), State.RPAREN     ),
+                new Transition( State.START,    new Chars("$"), State.DOLLAR     ),
+                new Transition( State.DOLLAR,   digits,         State.REGISTER   ),
+                new Transition( State.REGISTER, digits,         State.REGISTER   ),
+                new Transition( State.START,    new Chars("0"), State.ZERO       ),
+                new Transition( State.ZERO,     new Chars("x"), State.ZEROX      ),
+                new Transition( State.ZERO,     digits,         State.INT        ),
+                new Transition( State.ZEROX,    hexDigits,      State.HEXINT     ),
+                new Transition( State.HEXINT,   hexDigits,      State.HEXINT     ),
+                new Transition( State.ID,       new Chars(":"), State.LABEL      ),
+                new Transition( State.START,    new Chars(";"), State.COMMENT    ),
+                new Transition( State.START,    new Chars("."), State.DOT        ),
+                new Transition( State.DOT,      new Chars("w"), State.DOTW       ),
+                new Transition( State.DOTW,     new Chars("o"), State.DOTWO      ),
+                new Transition( State.DOTWO,    new Chars("r"), State.DOTWOR     ),
+                new Transition( State.DOTWOR,   new Chars("d"), State.DOTWORD    ),
+                new Transition( State.DOT,      new Chars("s"), State.DOTS       ),
+                new Transition( State.DOTS,     new Chars("p"), State.DOTSP      ),
+                new Transition( State.DOTSP,    new Chars("a"), State.DOTSPA     ),
+                new Transition( State.DOTSPA,   new Chars("c"), State.DOTSPAC    ),
+                new Transition( State.DOTSPAC,  new Chars("e"), State.DOTSPACE   ),
+                new Transition( State.DOT,      new Chars("f"), State.DOTF       ),
+                new Transition( State.DOTF,     new Chars("i"), State.DOTFI      ),
+                new Transition( State.DOTFI,    new Chars("l"), State.DOTFIL     ),
+                new Transition( State.DOTFIL,   new Chars("l"), State.DOTFILL    ),
+                new Transition( State.DOT,      new Chars("a"), State.DOTA       ),
+                new Transition( State.DOTA,     new Chars("s"), State.DOTAS      ),
+                new Transition( State.DOTAS,    new Chars("c"), State.DOTASC     ),
+                new Transition( State.DOTASC,   new Chars("i"), State.DOTASCI    ),
+                new Transition( State.DOTASCI,  new Chars("i"), State.DOTASCII   ),
+                new Transition( State.DOTASCII, new Chars("z"), State.DOTASCIIZ  ),
+                new Transition( State.START,    new Chars("\""), State.QUOTE     ),
+                new Transition( State.QUOTE,    stringChars,    State.QUOTE      ),
+                new Transition( State.QUOTE,    new Chars("\\"), State.ESCAPE   ),
+                new Transition( State.ESCAPE,   all,            State.QUOTE      ),
+                new Transition( State.QUOTE,    new Chars("\""), State.STRING    ),
+                new Transition( State.COMMENT,  all,            State.COMMENT    )
+        };
+    }
+
+    /** Partitions the line held in input[from..to), as raw ASCII bytes, into an array of tokens.
+     *  The array of tokens is returned. Whitespace between tokens is skipped, and a ; comment
+     *  cut off, eight bytes at a time; everything else goes through the DFA one byte at a time.
+     */
+    public Token[] scan( byte[] input, int from, int to ) {
+
+        if( view == null || view.array() != input ) {
+            view = ByteBuffer.wrap( input ).order( ByteOrder.LITTLE_ENDIAN );
+        }
+
+        // a comment runs to the end of the line, and no token can contain a ; - except a string,
+        // so a ; after the first " is left for the DFA to sort out
+        int quote   = indexOf( view, from, to, (byte) '"' );
+        int comment = indexOf( view, from, quote >= 0 ? quote : to, (byte) ';' );
+        if( comment >= 0 ) to = comment;
+
+        List<Token> ret = new ArrayList<Token>();
+        int   i          = skipWhitespace( view, from, to );
+        int   startIndex = i;
+        State state      = State.START;
+
+        while( i < to ) {
+
+            Transition trans = findTransition( state, (char) ( input[i] & 0xFF ) );
+
+            if( trans == null ) {
+                // No more transitions possible
+                if( ! state.isFinal() ) {
+                    throw new AsmError( "ERROR in lexing after reading " + new String( input, from, i - from, LATIN1 ) );
+                }
+                if( state.kind != Kind.WHITESPACE ) {
+                    ret.add( new Token( state.kind, new String( input, startIndex, i - startIndex, LATIN1 ) ) );
+                }
+                i          = skipWhitespace( view, i, to );
+                startIndex = i;
+                state      = State.START;
+            } else {
+                state      = trans.toState;
+                i++;
+            }
+        }
+
+        // the end of the line finishes whatever token was being built up
+        if( state != State.START ) {
+            if( ! state.isFinal() ) {
+                throw new AsmError( "ERROR in lexing after reading " + new String( input, from, i - from, LATIN1 ) );
+            }
+            if( state.kind != Kind.WHITESPACE ) {
+                ret.add( new Token( state.kind, new String( input, startIndex, i - startIndex, LATIN1 ) ) );
+            }
+        }
+
+        return ret.toArray( new Token[ret.size()] );
+    }
+
+    ///////////////////////////////////////////////////////////////
+    // END OF PUBLIC METHODS
+    ///////////////////////////////////////////////////////////////
+
+    private Transition findTransition( State state, char c ) {
+        for( int j = 0; j < table.length; j++ ) {
+            Transition trans = table[j];
+            if( trans.fromState == state && trans.chars.contains(c) ) {
+                return trans;
+            }
+        }
+        return null;
+    }
+
+    // SWAR ("SIMD within a register") helpers: each long read from the little-endian view holds
+    // eight consecutive bytes, the first of them in the low byte, so the first match in a word is
+    // found from its trailing zeros. Bytes past the last whole word are checked one at a time.
+    private static final long ONES  = 0x0101010101010101L;
+    private static final long HIGHS = 0x8080808080808080L;
+    private static final long LOWS  = 0x7F7F7F7F7F7F7F7FL;
+
+    private static final Charset LATIN1 = Charset.forName( "ISO-8859-1" );
+
+    private ByteBuffer view;   // the last array passed to scan( byte[], int, int ), read a long at a time
+
+    // sets the high bit of every byte of x that is zero; no borrows cross bytes, so there are no false hits
+    private static long zeroBytes( long x ) {
+        return ~( ( ( x & LOWS ) + LOWS ) | x | LOWS );
+    }
+
+    // sets the high bit of every byte of x equal to c
+    private static long matchBytes( long x, byte c ) {
+        return zeroBytes( x ^ ( ( c & 0xFFL ) * ONES ) );
+    }
+
+    /** Returns the index of the first c in view[from..to), or -1. */
+    static int indexOf( ByteBuffer view, int from, int to, byte c ) {
+        int i = from;
+        for( ; i + 8 <= to; i += 8 ) {
+            long hits = matchBytes( view.getLong( i ), c );
+            if( hits != 0 ) return i + ( Long.numberOfTrailingZeros( hits ) >>> 3 );
+        }
+        byte[] bytes = view.array();
+        for( ; i < to; i++ ) {
+            if( bytes[i] == c ) return i;
+        }
+        return -1;
+    }
+
+    /** Returns the index of the first c or d in view[from..to), or -1. */
+    static int indexOf( ByteBuffer view, int from, int to, byte c, byte d ) {
+        int i = from;
+        for( ; i + 8 <= to; i += 8 ) {
+            long x    = view.getLong( i );
+            long hits = matchBytes( x, c ) | matchBytes( x, d );
+            if( hits != 0 ) return i + ( Long.numberOfTrailingZeros( hits ) >>> 3 );
+        }
+        byte[] bytes = view.array();
+        for( ; i < to; i++ ) {
+            if( bytes[i] == c || bytes[i] == d ) return i;
+        }
+        return -1;
+    }
+
+    // returns the index of the first byte in view[from..to) that is not a tab, newline, return or blank
+    private static int skipWhitespace( ByteBuffer view, int from, int to ) {
+        int i = from;
+        for( ; i + 8 <= to; i += 8 ) {
+            long x     = view.getLong( i );
+            long blank = matchBytes( x, (byte) ' '  ) | matchBytes( x, (byte) '\t' )
+                       | matchBytes( x, (byte) '\r' ) | matchBytes( x, (byte) '\n' );
+            long other = ~blank & HIGHS;
+            if( other != 0 ) return i + ( Long.numberOfTrailingZeros( other ) >>> 3 );
+        }
+        byte[] bytes = view.array();
+        for( ; i < to; i++ ) {
+            byte b = bytes[i];
+            if( b != ' ' && b != '\t' && b != '\r' && b != '\n' ) return i;
+        }
+        return to;
+    }
+
+    // Final states or those whose kind (of token) is not null, except for WHITESPACE (a special case).
+    private static enum State {
+        START(      null            ),
+        DOLLAR(     null            ),
+        MINUS(      null            ),
+        REGISTER(   Kind.REGISTER   ),
+        INT(        Kind.INT        ),
+        ID(         Kind.ID         ),
+        LABEL(      Kind.LABEL      ),
+        COMMA(      Kind.COMMA      ),
+        LPAREN(     Kind.LPAREN     ),
+        RPAREN(     Kind.RPAREN     ),
+        ZERO(       Kind.INT        ),
+        ZEROX(      null            ),
+        HEXINT(     Kind.HEXINT     ),
+        COMMENT(    Kind.WHITESPACE ),
+        DOT(        null            ),
+        DOTW(       null            ),
+        DOTWO(      null            ),
+        DOTWOR(     null            ),
+        DOTWORD(    Kind.DOTWORD    ),
+        DOTS(       null            ),
+        DOTSP(      null            ),
+        DOTSPA(     null            ),
+        DOTSPAC(    null            ),
+        DOTSPACE(   Kind.DOTSPACE   ),
+        DOTF(       null            ),
+        DOTFI(      null            ),
+        DOTFIL(     null            ),
+        DOTFILL(    Kind.DOTFILL    ),
+        DOTA(       null            ),
+        DOTAS(      null            ),
+        DOTASC(     null            ),
+        DOTASCI(    null            ),
+        DOTASCII(   Kind.DOTASCII   ),
+        DOTASCIIZ(  Kind.DOTASCIIZ  ),
+        QUOTE(      null            ),
+        ESCAPE(     null            ),
+        STRING(     Kind.STRING     ),
+        WHITESPACE( Kind.WHITESPACE );
+
+        Kind kind;
+
+        State( Kind kind ) {
+            this.kind = kind;
+        }
+
+        boolean isFinal() {
+            return kind != null;
+        }
+    }
+
+    private interface CharSet {
+        public boolean contains( char newC );
+    }
+
+    private class Chars implements CharSet {
+        private String chars;
+        public  Chars( String chars ) { this.chars = chars; }
+        public  boolean contains( char newC ) {
+            return chars.indexOf(newC) >= 0;
+        }
+    }
+
+    private class NotChars implements CharSet {
+        private String chars;
+        public  NotChars( String chars ) { this.chars = chars; }
+        public  boolean contains( char newC ) {
+            return chars.indexOf(newC) < 0;
+        }
+    }
+
+    private class AllChars implements CharSet {
+        public boolean contains( char newC ) {
+            return true;
+        }
+    }
+
+    private class Transition {
+        State   fromState;
+        CharSet chars;
+        State   toState;
+        Transition( State fromState, CharSet chars, State toState ) {
+            this.fromState = fromState;
+            this.chars     = chars;
+            this.toState   = toState;
+        }
+    }
+    
+    private Transition[] table;
+}
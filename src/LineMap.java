@@ -0,0 +1,119 @@
+import java.util.*;
+import java.io.*;
+
+/** Which source line each word of an assembled program came from (java Asm -m something.map),
+ *  kept as runs: entry k says that the words from words[k] up to words[k + 1] were produced by
+ *  line lines[k]. Asm marks a run whenever pass 2 starts emitting a line's words, so a program
+ *  takes one entry per line that produces words rather than one per word. For a BinaryProgram
+ *  the "line" is the record number, counting from 1.
+ *
+ *  The file format is big-endian:
+ *       "MIPL"                            magic number
+ *       u16  version                      1
+ *       u32  entry count, then for each   varint  words since the previous entry's first word
+ *                                         varint  line minus the previous entry's line, zig-zag encoded
+ *  where a varint is 7 bits per byte, low bits first, the top bit set on every byte but the last.
+ *  Consecutive lines mostly differ by 1 and emit 1 or 2 words, so most entries take 2 bytes.
+ */
+class LineMap {
+
+    public static final int VERSION = 1;
+
+    private static final byte[] MAGIC = { 'M', 'I', 'P', 'L' };
+
+    private int[] words = new int[1024];      // index of each run's first word
+    private int[] lines = new int[1024];
+    private int   count = 0;
+
+    /** Records that the words from index word on come from line; words must not go backwards. */
+    public void mark( int word, int line ) {
+        if( count > 0 && lines[count - 1] == line ) return;
+        if( count > 0 && words[count - 1] == word ) {
+            lines[count - 1] = line;                  // the previous line produced no words after all
+            return;
+        }
+        if( count == words.length ) {
+            words = Arrays.copyOf( words, count * 2 );
+            lines = Arrays.copyOf( lines, count * 2 );
+        }
+        words[count] = word;
+        lines[count] = line;
+        count++;
+    }
+
+    /** The line that produced the word at index word, or 0 if it isn't known. */
+    public int lineAt( int word ) {
+        int lo = 0, hi = count;
+        while( lo < hi ) {                            // the first run starting after word
+            int mid = ( lo + hi ) >>> 1;
+            if( words[mid] <= word ) lo = mid + 1;
+            else                     hi = mid;
+        }
+        return lo == 0 ? 0 : lines[lo - 1];
+    }
+
+    /** The number of runs. */
+    public int size() {
+        return count;
+    }
+
+    /** Reads a map in the format above. */
+    public static LineMap read( InputStream input ) throws IOException {
+        DataInputStream in = new DataInputStream( new BufferedInputStream( input, 1 << 16 ) );
+        byte[] magic = new byte[ MAGIC.length ];
+        in.readFully( magic );
+        if( ! Arrays.equals( magic, MAGIC ) ) throw new AsmError( "ERROR, not a line map" );
+        int version = in.readUnsignedShort();
+        if( version != VERSION ) throw new AsmError( "ERROR, unsupported line map version " + version );
+
+        LineMap map     = new LineMap();
+        int     entries = in.readInt();
+        int     word    = 0;
+        int     line    = 0;
+        for( int k = 0; k < entries; k++ ) {
+            word += readVarint( in );
+            int zigzag = readVarint( in );
+            line += ( zigzag >>> 1 ) ^ -( zigzag & 1 );
+            map.mark( word, line );
+        }
+        return map;
+    }
+
+    /** Writes the map in the format above. */
+    public void write( OutputStream output ) throws IOException {
+        DataOutputStream out = new DataOutputStream( new BufferedOutputStream( output, 1 << 16 ) );
+        out.write( MAGIC );
+        out.writeShort( VERSION );
+        out.writeInt( count );
+        int word = 0;
+        int line = 0;
+        for( int k = 0; k < count; k++ ) {
+            int delta = lines[k] - line;
+            writeVarint( out, words[k] - word );
+            writeVarint( out, ( delta << 1 ) ^ ( delta >> 31 ) );
+            word = words[k];
+            line = lines[k];
+        }
+        out.flush();
+    }
+
+    ///////////////////////////////////////////////////////////////
+
+    private static void writeVarint( DataOutputStream out, int value ) throws IOException {
+        while( ( value & ~0x7F ) != 0 ) {
+            out.writeByte( ( value & 0x7F ) | 0x80 );
+            value >>>= 7;
+        }
+        out.writeByte( value );
+    }
+
+    private static int readVarint( DataInputStream in ) throws IOException {
+        int value = 0;
+        for( int shift = 0; shift < 35; shift += 7 ) {
+            int b = in.readUnsignedByte();
+            value |= ( b & 0x7F ) << shift;
+            if( b < 0x80 ) return value;
+        }
+        throw new AsmError( "ERROR, line map is corrupt" );
+    }
+}
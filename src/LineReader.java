@@ -0,0 +1,81 @@
+import java.io.*;
+import java.nio.*;
+
+/** Splits an input stream into lines of raw bytes for Lexer.scan( byte[], int, int ).
+ *  Lines end at "\n", "\r\n" or a lone "\r", as with Scanner.nextLine (which also
+ *  ends lines at the Unicode separators U+0085, U+2028 and U+2029; those are left
+ *  alone here), and the current line is only valid until the next call to next().
+ */
+class LineReader {
+
+    private final InputStream in;
+    private byte[]     buf  = new byte[1 << 16];
+    private ByteBuffer view = wrap( buf );
+    private int        pos  = 0;     // start of the unread bytes in buf
+    private int        end  = 0;     // end of the bytes read so far
+    private boolean    eof  = false;
+
+    private int lineStart;
+    private int lineEnd;
+
+    public LineReader( InputStream in ) {
+        this.in = in;
+    }
+
+    /** Advances to the next line; returns false once the input is exhausted. */
+    public boolean next() throws IOException {
+        int scanned = pos;   // bytes before this are known not to be line ends
+        while( true ) {
+            int newline = Lexer.indexOf( view, scanned, end, (byte) '\n', (byte) '\r' );
+            // a '\r' that is the last byte read so far has to wait to see whether a '\n' follows it
+            if( newline >= 0 && ( buf[newline] == '\n' || newline + 1 < end || eof ) ) {
+                setLine( pos, newline );
+                pos = newline + 1;
+                if( buf[newline] == '\r' && pos < end && buf[pos] == '\n' ) pos++;
+                return true;
+            }
+            scanned = newline >= 0 ? newline : end;
+            if( eof ) {
+                if( pos == end ) return false;
+                setLine( pos, end );      // last line without a newline
+                pos = end;
+                return true;
+            }
+            scanned -= pos;
+            fill();
+        }
+    }
+
+    public byte[] buffer() { return buf;       }
+    public int    start()  { return lineStart; }
+    public int    end()    { return lineEnd;   }
+
+    ///////////////////////////////////////////////////////////////
+
+    private void setLine( int start, int end ) {
+        lineStart = start;
+        lineEnd   = end;
+    }
+
+    // moves the unread bytes to the front of buf (growing it when a line fills it) and reads more
+    private void fill() throws IOException {
+        int unread = end - pos;
+        if( unread == buf.length ) {
+            byte[] bigger = new byte[ buf.length * 2 ];
+            System.arraycopy( buf, pos, bigger, 0, unread );
+            buf  = bigger;
+            view = wrap( buf );
+        } else {
+            System.arraycopy( buf, pos, buf, 0, unread );
+        }
+        pos = 0;
+        end = unread;
+        int n = in.read( buf, end, buf.length - end );
+        if( n < 0 ) eof = true;
+        else        end += n;
+    }
+
+    private static ByteBuffer wrap( byte[] bytes ) {
+        return ByteBuffer.wrap( bytes ).order( ByteOrder.LITTLE_ENDIAN );
+    }
+}
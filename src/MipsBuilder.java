@@ -0,0 +1,175 @@
+import java.util.*;
+import java.nio.channels.*;
+import java.io.*;
+
+/** Builds a MIPS program in memory, for code generated at run time, eg
+ *       int[] words = new MipsBuilder()
+ *           .label( "loop" ).add( 3, 3, 1 ).bne( 3, 2, "loop" )
+ *           .jr( 31 )
+ *           .words();
+ *  Each call encodes its instruction straight into a growable int[] with Asm.encode, so the
+ *  result is the same as assembling the equivalent text; branches and .words that use a label
+ *  before it's defined are backpatched when the words are asked for. Registers are numbers,
+ *  and errors throw the same AsmErrors as the assembler.
+ */
+class MipsBuilder {
+
+    private int[] words = new int[1024];
+    private int   size  = 0;
+
+    private Map<String,Integer> symbolTable = new HashMap<String,Integer>();
+
+    // words still waiting for a label's address: index into words, the label, and whether it's a branch
+    private int[]     fixIndex  = new int[64];
+    private String[]  fixLabel  = new String[64];
+    private boolean[] fixBranch = new boolean[64];
+    private int       fixes     = 0;
+
+    ///////////////////////////////////////////////////////////////
+    // Instructions, in the order of their operands in assembly
+    ///////////////////////////////////////////////////////////////
+
+    public MipsBuilder add(   int d, int s, int t ) { return r3( OpCode.ADD,  d, s, t ); }
+    public MipsBuilder sub(   int d, int s, int t ) { return r3( OpCode.SUB,  d, s, t ); }
+    public MipsBuilder slt(   int d, int s, int t ) { return r3( OpCode.SLT,  d, s, t ); }
+    public MipsBuilder sltu(  int d, int s, int t ) { return r3( OpCode.SLTU, d, s, t ); }
+
+    public MipsBuilder mult(  int s, int t ) { return r3( OpCode.MULT,  s, t, 0 ); }
+    public MipsBuilder multu( int s, int t ) { return r3( OpCode.MULTU, s, t, 0 ); }
+    public MipsBuilder div(   int s, int t ) { return r3( OpCode.DIV,   s, t, 0 ); }
+    public MipsBuilder divu(  int s, int t ) { return r3( OpCode.DIVU,  s, t, 0 ); }
+
+    public MipsBuilder mfhi(  int d ) { return r3( OpCode.MFHI, d, 0, 0 ); }
+    public MipsBuilder mflo(  int d ) { return r3( OpCode.MFLO, d, 0, 0 ); }
+    public MipsBuilder lis(   int d ) { return r3( OpCode.LIS,  d, 0, 0 ); }
+    public MipsBuilder jr(    int s ) { return r3( OpCode.JR,   s, 0, 0 ); }
+    public MipsBuilder jalr(  int s ) { return r3( OpCode.JALR, s, 0, 0 ); }
+
+    /** lw $t, i($s) */
+    public MipsBuilder lw( int t, int i, int s ) { return immediate( OpCode.LW, t, s, i ); }
+
+    /** sw $t, i($s) */
+    public MipsBuilder sw( int t, int i, int s ) { return immediate( OpCode.SW, t, s, i ); }
+
+    /** beq $s, $t, offset (in words, from the next instruction) */
+    public MipsBuilder beq( int s, int t, int offset ) { return immediate( OpCode.BEQ, s, t, offset ); }
+    public MipsBuilder bne( int s, int t, int offset ) { return immediate( OpCode.BNE, s, t, offset ); }
+
+    /** beq $s, $t, label */
+    public MipsBuilder beq( int s, int t, String label ) { return branch( OpCode.BEQ, s, t, label ); }
+    public MipsBuilder bne( int s, int t, String label ) { return branch( OpCode.BNE, s, t, label ); }
+
+    ///////////////////////////////////////////////////////////////
+    // Labels and data
+    ///////////////////////////////////////////////////////////////
+
+    /** label: defines label as the address of the next word. */
+    public MipsBuilder label( String label ) {
+        if( symbolTable.containsKey( label ) ) {
+            throw new AsmError( " ERROR, duplicate label " + label );
+        }
+        symbolTable.put( label, size * 4 );
+        return this;
+    }
+
+    /** .word value */
+    public MipsBuilder word( int value ) {
+        append( value );
+        return this;
+    }
+
+    /** .word label */
+    public MipsBuilder word( String label ) {
+        fix( label, false );
+        append( 0 );
+        return this;
+    }
+
+    ///////////////////////////////////////////////////////////////
+    // Results
+    ///////////////////////////////////////////////////////////////
+
+    /** The address the next word will have. */
+    public int address() {
+        return size * 4;
+    }
+
+    /** The assembled program, with every label reference filled in. */
+    public int[] words() {
+        patch();
+        return Arrays.copyOf( words, size );
+    }
+
+    /** Writes the assembled program to out in the emitter's format. */
+    public void emit( Emitter emitter, WritableByteChannel out ) throws IOException {
+        patch();
+        emitter.emit( words, size, out );
+    }
+
+    ///////////////////////////////////////////////////////////////
+
+    private MipsBuilder r3( OpCode operator, int r1, int r2, int r3 ) {
+        append( Asm.encode( operator, register( r1 ), register( r2 ), register( r3 ), 0 ) );
+        return this;
+    }
+
+    private MipsBuilder immediate( OpCode operator, int r1, int r2, int i ) {
+        if( i < -32768 || i > 0xffff ) {
+            throw new AsmError( "ERROR, Integer out of range" );
+        }
+        append( Asm.encode( operator, register( r1 ), register( r2 ), 0, i ) );
+        return this;
+    }
+
+    private MipsBuilder branch( OpCode operator, int s, int t, String label ) {
+        fix( label, true );
+        append( Asm.encode( operator, register( s ), register( t ), 0, 0 ) );
+        return this;
+    }
+
+    private static int register( int r ) {
+        if( r < 0 || r > 31 ) {
+            throw new AsmError( "ERROR, NOT VALID REGISTER" );
+        }
+        return r;
+    }
+
+    private void append( int word ) {
+        if( size == words.length ) {
+            words = Arrays.copyOf( words, size * 2 );
+        }
+        words[size++] = word;
+    }
+
+    // remembers that the word about to be appended refers to label
+    private void fix( String label, boolean branch ) {
+        if( fixes == fixIndex.length ) {
+            fixIndex  = Arrays.copyOf( fixIndex,  fixes * 2 );
+            fixLabel  = Arrays.copyOf( fixLabel,  fixes * 2 );
+            fixBranch = Arrays.copyOf( fixBranch, fixes * 2 );
+        }
+        fixIndex[fixes]  = size;
+        fixLabel[fixes]  = label;
+        fixBranch[fixes] = branch;
+        fixes++;
+    }
+
+    // fills in every label reference made so far; all of those labels must be defined by now
+    private void patch() {
+        for( int f = 0; f < fixes; f++ ) {
+            Integer address = symbolTable.get( fixLabel[f] );
+            if( address == null ) {
+                throw new AsmError( "ERROR, The label " + fixLabel[f] + " is not defined" );
+            }
+            int index = fixIndex[f];
+            if( fixBranch[f] ) {
+                // offsets are relative to the instruction after the branch
+                int offset = ( address - ( index + 1 ) * 4 ) / 4;
+                words[index] = ( words[index] & ~0xffff ) | ( offset & 0xffff );
+            } else {
+                words[index] = address;
+            }
+        }
+        fixes = 0;
+    }
+}
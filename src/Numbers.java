@@ -1,11 +1,12 @@
-import java.util.*;
+import java.io.*;
 
 public class Numbers {
-    public static final void main(String[] args) {
-        Scanner s = new Scanner(System.in);
-        while(s.hasNext()) {
-            int i = new Integer(s.next());
-            System.out.println(i);
+    public static final void main(String[] args) throws IOException {
+        IntReader in  = new IntReader( System.in );
+        IntWriter out = new IntWriter( System.out );
+        while( in.hasNext() ) {
+            out.println( in.next() );
         }
+        out.flush();
     }
 }
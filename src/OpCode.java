@@ -0,0 +1,45 @@
+import java.util.*;
+
+/** The various kinds of opcodes that are legal */
+enum OpCode {
+	BLANK(  -1,   -1 ),
+    ADD(     0, 0x20 ),
+    SUB(     0, 0x22 ),
+    MULT(    0, 0x18 ),
+    MULTU(   0, 0x19 ),
+    DIV(     0, 0x1A ),
+    DIVU(    0, 0x1B ),
+    MFHI(    0, 0x10 ),
+    MFLO(    0, 0x12 ),
+    LIS(     0, 0x14 ),
+    LW(     35,   -1 ),
+    SW(     43,   -1 ),
+    SLT(     0, 0x2A ),
+    SLTU(    0, 0x2B ),
+    BEQ(     4,   -1 ),
+    BNE(     5,   -1 ),
+    JR(      0, 0x08 ),
+    JALR(    0, 0x09 );
+
+    // the opcode field (bits 31-26), and for opcode 0 the function field (bits 5-0)
+    final int opcode;
+    final int funct;
+
+    OpCode( int opcode, int funct ) {
+        this.opcode = opcode;
+        this.funct  = funct;
+    }
+
+    private static final Map<String,OpCode> LOWER = new HashMap<String,OpCode>();
+    static {
+        for( OpCode operator : values() ) LOWER.put( operator.name().toLowerCase(), operator );
+    }
+
+    /** Like valueOf, but ignoring case; the usual lower-case names are found without
+     *  building an upper-case copy of the name for every instruction assembled.
+     */
+    static OpCode forName( String name ) {
+        OpCode operator = LOWER.get( name );
+        return operator != null ? operator : valueOf( name.toUpperCase() );
+    }
+}
@@ -0,0 +1,238 @@
+import java.util.*;
+
+/** An optional peephole pass (java Asm -O ...) run by Asm between pass 1 and pass 2. It removes
+ *  instructions that naive compiler output is full of but that can't change what the program does:
+ *
+ *    (1) moves to $0, and moves of a register to itself:    add $0, $3, $4     add $3, $3, $0
+ *    (2) a copy whose result is overwritten straight away:  add $3, $4, $0  followed by  lis $3
+ *    (3) a branch to the next instruction:                  beq $1, $2, next   next: ...
+ *    (4) a lis of a constant already in the register:       lis $3 / .word 7 / lis $3 / .word 7
+ *
+ *  Removed lines keep their labels, which then name the word after them, so pass 1's addresses
+ *  are recomputed afterwards by Asm; numeric branch offsets are rewritten here for the words that
+ *  were removed between a branch and its target. Addresses computed some other way (eg loaded with
+ *  lis from a hand-written constant and used by jr) can't be fixed up, which is why this is optional.
+ */
+class Peephole {
+
+    private final List<Token[]> lines;
+    private final int[]         sizes;        // bytes taken by each line's statement
+    private final Map<String,Integer> symbolTable;
+
+    private final int[]     statement;        // index of the first token after the labels
+    private final int[]     word;             // index of each line's first word
+    private final boolean[] removed;
+    private final boolean[] isData;           // lines that are data, including the word after a lis
+    private final boolean[] targeted;         // lines a numeric branch jumps to
+    private final int[]     gone;             // words removed before each line
+
+    private Peephole( List<Token[]> lines, int[] sizes, Map<String,Integer> symbolTable ) {
+        this.lines       = lines;
+        this.sizes       = sizes;
+        this.symbolTable = symbolTable;
+        int n = lines.size();
+        statement = new int[n];
+        word      = new int[n + 1];
+        removed   = new boolean[n];
+        isData    = new boolean[n];
+        targeted  = new boolean[n];
+        gone      = new int[n + 1];
+    }
+
+    /** Removes what it can from lines, whose labels have been put in symbolTable by pass 1;
+     *  updates sizes to match and returns the number of instructions removed.
+     */
+    public static int optimize( List<Token[]> lines, int[] sizes, Map<String,Integer> symbolTable ) {
+        return new Peephole( lines, sizes, symbolTable ).run();
+    }
+
+    private int run() {
+        int n = lines.size();
+        boolean afterLis = false;
+        for( int i = 0; i < n; i++ ) {
+            Token[] tokens = lines.get(i);
+            int s = 0;
+            while( s < tokens.length && tokens[s].kind == Kind.LABEL ) s++;
+            statement[i] = s;
+            word[i + 1]  = word[i] + sizes[i] / 4;
+            if( s == tokens.length ) continue;
+            isData[i] = afterLis || tokens[s].kind != Kind.ID;
+            afterLis  = ! isData[i] && opcode( i ) == OpCode.LIS;
+        }
+        for( int i = 0; i < n; i++ ) {
+            if( isBranch( i ) && lines.get(i)[ statement[i] + 5 ].kind != Kind.ID ) {
+                int target = lineAt( word[i] + 1 + offset( i ) );
+                if( target >= 0 ) targeted[target] = true;
+            }
+        }
+
+        int count = 0;
+        for( int i = 0; i < n; i++ ) {
+            if( ! isInstruction( i ) ) continue;
+            if( noOp( i ) || deadCopy( i ) || branchToNext( i ) ) {
+                removed[i] = true;
+                count++;
+            } else if( repeatedLis( i ) ) {
+                removed[i] = removed[ next( i ) ] = true;
+                count += 2;
+            }
+        }
+        if( count == 0 ) return 0;
+
+        for( int i = 0; i < n; i++ ) {
+            gone[i + 1] = gone[i] + ( removed[i] ? sizes[i] / 4 : 0 );
+        }
+
+        // numeric branches have to skip fewer words now
+        for( int i = 0; i < n; i++ ) {
+            if( removed[i] || ! isBranch( i ) ) continue;
+            Token[] tokens = lines.get(i);
+            int     at     = statement[i] + 5;
+            if( tokens[at].kind == Kind.ID ) continue;
+            int target = word[i] + 1 + offset( i );
+            int moved  = newWord( target ) - newWord( word[i] ) - 1;
+            if( moved != offset( i ) ) {
+                tokens[at] = new Token( Kind.INT, Integer.toString( moved ) );
+            }
+        }
+
+        for( int i = 0; i < n; i++ ) {
+            if( removed[i] ) {
+                lines.set( i, Arrays.copyOf( lines.get(i), statement[i] ) );
+                sizes[i] = 0;
+            }
+        }
+        return count;
+    }
+
+    ///////////////////////////////////////////////////////////////
+    // The patterns
+    ///////////////////////////////////////////////////////////////
+
+    // (1) add, sub, slt, sltu, mfhi or mflo into $0, or add/sub $x, $x, $0 and add $x, $0, $x
+    private boolean noOp( int i ) {
+        OpCode op = opcode( i );
+        if( op == OpCode.MFHI || op == OpCode.MFLO ) return reg( i, 1 ) == 0;
+        if( ! isThreeRegister( op ) ) return false;
+        int d = reg( i, 1 ), s = reg( i, 3 ), t = reg( i, 5 );
+        if( d == 0 ) return true;
+        if( op == OpCode.ADD ) return ( d == s && t == 0 ) || ( d == t && s == 0 );
+        if( op == OpCode.SUB ) return d == s && t == 0;
+        return false;
+    }
+
+    // (2) add $x, $y, $0 (or $0, $y) when the next instruction sets $x without reading it
+    private boolean deadCopy( int i ) {
+        if( opcode( i ) != OpCode.ADD ) return false;
+        if( reg( i, 3 ) != 0 && reg( i, 5 ) != 0 ) return false;
+        int x = reg( i, 1 );
+        int j = next( i );
+        if( j < 0 || ! isInstruction( j ) ) return false;
+        OpCode op = opcode( j );
+        if( op == OpCode.MFHI || op == OpCode.MFLO || op == OpCode.LIS ) return reg( j, 1 ) == x;
+        if( op == OpCode.LW ) return reg( j, 1 ) == x && reg( j, 5 ) != x;
+        if( isThreeRegister( op ) ) return reg( j, 1 ) == x && reg( j, 3 ) != x && reg( j, 5 ) != x;
+        return false;
+    }
+
+    // (3) beq or bne whose target is the word right after it
+    private boolean branchToNext( int i ) {
+        if( ! isBranch( i ) ) return false;
+        Token target = lines.get(i)[ statement[i] + 5 ];
+        if( target.kind == Kind.ID ) {
+            Integer address = symbolTable.get( target.lexeme );
+            return address != null && address == ( word[i] + 1 ) * 4;
+        }
+        return offset( i ) == 0;
+    }
+
+    // (4) lis $x / .word C right after an identical pair; nothing may jump to the second one
+    private boolean repeatedLis( int i ) {
+        if( opcode( i ) != OpCode.LIS || targeted[i] ) return false;
+        int value     = next( i );
+        int firstWord = previous( i );
+        if( value < 0 || firstWord < 0 ) return false;
+        int firstLis  = previous( firstWord );
+        if( firstLis < 0 || ! isInstruction( firstLis ) || opcode( firstLis ) != OpCode.LIS ) return false;
+        if( reg( firstLis, 1 ) != reg( i, 1 ) ) return false;
+        for( int j = firstWord + 1; j <= value; j++ ) {
+            if( statement[j] > 0 ) return false;         // a label in between could be jumped to
+        }
+        return sameWord( lines.get( firstWord ), statement[firstWord], lines.get( value ), statement[value] );
+    }
+
+    // two single-value .word statements for the same integer or label
+    private boolean sameWord( Token[] a, int sa, Token[] b, int sb ) {
+        if( a.length - sa != 2 || b.length - sb != 2 ) return false;
+        if( a[sa].kind != Kind.DOTWORD || b[sb].kind != Kind.DOTWORD ) return false;
+        Token x = a[sa + 1], y = b[sb + 1];
+        if( x.kind == Kind.ID || y.kind == Kind.ID ) return x.kind == y.kind && x.lexeme.equals( y.lexeme );
+        return x.toInt() == y.toInt();
+    }
+
+    ///////////////////////////////////////////////////////////////
+
+    private boolean isInstruction( int i ) {
+        return statement[i] < lines.get(i).length && ! isData[i];
+    }
+
+    private boolean isBranch( int i ) {
+        if( ! isInstruction( i ) ) return false;
+        OpCode op = opcode( i );
+        return op == OpCode.BEQ || op == OpCode.BNE;
+    }
+
+    private static boolean isThreeRegister( OpCode op ) {
+        return op == OpCode.ADD || op == OpCode.SUB || op == OpCode.SLT || op == OpCode.SLTU;
+    }
+
+    private OpCode opcode( int i ) {
+        return OpCode.forName( lines.get(i)[ statement[i] ].lexeme );
+    }
+
+    // the register number in the token at position k of line i's statement
+    private int reg( int i, int k ) {
+        return Integer.parseInt( lines.get(i)[ statement[i] + k ].lexeme.substring(1) );
+    }
+
+    // the numeric offset of branch i, sign extended as the encoding does
+    private int offset( int i ) {
+        return (short) lines.get(i)[ statement[i] + 5 ].toInt();
+    }
+
+    // the next (or previous) line with a statement, or -1; a line that only has labels is skipped
+    private int next( int i ) {
+        for( int j = i + 1; j < lines.size(); j++ ) {
+            if( statement[j] < lines.get(j).length ) return j;
+        }
+        return -1;
+    }
+
+    // previous skips the lines already removed, so that a third identical lis can go too
+    private int previous( int i ) {
+        for( int j = i - 1; j >= 0; j-- ) {
+            if( statement[j] < lines.get(j).length && ! removed[j] ) return j;
+        }
+        return -1;
+    }
+
+    // the line whose statement starts at word w, or -1
+    private int lineAt( int w ) {
+        int i = Arrays.binarySearch( word, 0, lines.size(), w );
+        if( i < 0 ) return -1;
+        while( i > 0 && word[i - 1] == w ) i--;       // lines without words share their index
+        while( i < lines.size() && sizes[i] == 0 ) i++;
+        return i < lines.size() ? i : -1;
+    }
+
+    // where word w ends up once the removed words are gone; gone[i] counts those before line i
+    private int newWord( int w ) {
+        int lo = 0, hi = lines.size();
+        while( lo < hi ) {                            // the first line at or after w
+            int mid = ( lo + hi ) >>> 1;
+            if( word[mid] < w ) lo = mid + 1;
+            else                hi = mid;
+        }
+        return w - gone[lo];
+    }
+}
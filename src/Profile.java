@@ -0,0 +1,244 @@
+import java.util.*;
+import java.io.*;
+
+/** Runs an assembled program on the Emulator and reports where its time went, by source line and
+ *  by label, eg
+ *       java Profile something.asm < input
+ *       java Profile -regs 5 7 -top 20 something.asm
+ *       java Profile something.mips something.map [something.sym]
+ *  The first two assemble something.asm (or .asm.gz or .mipb) in process; the last runs a program
+ *  assembled earlier with java Asm -m something.map -s something.sym. The program reads standard
+ *  input and writes standard output; the report goes to System.err.
+ *
+ *  Every instruction is counted, not sampled. Cycles are an estimate, from a cost per instruction
+ *  (see cycles) that is roughly that of a simple in-order MIPS: loads, stores and taken jumps cost
+ *  a little more than arithmetic, and multiplies and divides much more. Words of a label are those
+ *  from its address up to the next label's.
+ */
+public class Profile {
+
+    private static final int  MEMORY = 1 << 24;           // bytes, as the CS 241 tools have
+    private static final long LIMIT  = 1L << 36;          // instructions before giving up
+
+    public static final void main( String[] args ) throws IOException {
+        int top   = 10;
+        int first = 0;
+        int[] registers = { 0, 0 };
+        while( first < args.length && args[first].startsWith( "-" ) ) {
+            if( args[first].equals( "-top" ) && first + 1 < args.length ) {
+                top = Integer.parseInt( args[first + 1] );
+                first += 2;
+            } else if( args[first].equals( "-regs" ) && first + 2 < args.length ) {
+                registers[0] = Integer.parseInt( args[first + 1] );
+                registers[1] = Integer.parseInt( args[first + 2] );
+                first += 3;
+            } else {
+                first = args.length;
+            }
+        }
+        int files = args.length - first;
+        if( files < 1 || files > 3 ) {
+            System.err.println( "usage: java Profile [-top n] [-regs $1 $2] something.asm" );
+            System.err.println( "       java Profile [-top n] [-regs $1 $2] something.mips something.map [something.sym]" );
+            System.exit(1);
+        }
+
+        int[]               words;
+        LineMap             lines;
+        Map<String,Integer> symbols;
+        String              source = null;        // where the text of the lines is, if there is any
+        if( files == 1 ) {
+            Asm         asm   = new Asm( false );
+            InputStream input = Asm.source( new FileInputStream( args[first] ) );
+            String      result;
+            try {
+                result = asm.runAny( input );
+            } finally {
+                input.close();
+            }
+            if( ! result.equals( "OK" ) ) {
+                System.err.println( result );
+                System.exit(1);
+            }
+            words   = asm.words();
+            lines   = asm.lineMap();
+            symbols = asm.symbols();
+            if( ! args[first].endsWith( ".mipb" ) ) source = args[first];
+        } else {
+            words   = readWords( new File( args[first] ) );
+            try {
+                lines = readLines( new File( args[first + 1] ) );
+            } catch( AsmError e ) {
+                System.err.println( e.getMessage() );
+                System.exit(1);
+                return;
+            }
+            symbols = new HashMap<String,Integer>();
+            if( files == 3 ) {
+                for( Map.Entry<Integer,List<String>> entry : Disassembler.readSymbols( new File( args[first + 2] ) ).entrySet() ) {
+                    for( String label : entry.getValue() ) symbols.put( label, entry.getKey() );
+                }
+            }
+        }
+
+        Emulator emulator;
+        try {
+            emulator = new Emulator( words, MEMORY );
+        } catch( EmulatorError e ) {
+            System.err.println( e.getMessage() );
+            System.exit(1);
+            return;
+        }
+        emulator.setRegister( 1, registers[0] );
+        emulator.setRegister( 2, registers[1] );
+        String ending;
+        try {
+            emulator.run( new BufferedInputStream( System.in ), new BufferedOutputStream( System.out ), LIMIT );
+            ending = "returned, $3 = " + emulator.register( 3 );
+        } catch( EmulatorError e ) {
+            System.out.flush();
+            ending = e.getMessage();                          // still worth seeing what ran until then
+        }
+        new Profile( words, lines, symbols, emulator ).report( ending, top, source );
+    }
+
+    ///////////////////////////////////////////////////////////////
+
+    private final int[]               words;
+    private final LineMap             lines;
+    private final Map<String,Integer> symbols;
+    private final Emulator            emulator;
+
+    public Profile( int[] words, LineMap lines, Map<String,Integer> symbols, Emulator emulator ) {
+        this.words    = words;
+        this.lines    = lines;
+        this.symbols  = symbols;
+        this.emulator = emulator;
+    }
+
+    /** Estimated cycles for one execution of word. */
+    public static int cycles( int word ) {
+        OpCode operator = Disassembler.decode( word );
+        if( operator == null ) return 1;
+        switch( operator ) {
+            case MULT: case MULTU:                 return 12;
+            case DIV:  case DIVU:                  return 35;
+            case LW:   case SW:                    return 2;
+            case LIS:  case JR: case JALR:         return 2;
+            case BEQ:  case BNE:                   return 2;
+            default:                               return 1;
+        }
+    }
+
+    /** Prints the totals and the top lines and labels by cycles to System.err. */
+    public void report( String ending, int top, String source ) throws IOException {
+        long[] counts = emulator.counts();
+
+        // count and cycles for each line, and for each label
+        Map<Integer,long[]> byLine  = new HashMap<Integer,long[]>();
+        Map<String,long[]>  byLabel = new HashMap<String,long[]>();
+        int[]    starts = new int[ symbols.size() ];
+        String[] names  = new String[ symbols.size() ];
+        sortLabels( starts, names );
+        long total = 0;
+        for( int w = 0; w < counts.length; w++ ) {
+            if( counts[w] == 0 ) continue;
+            long cost = counts[w] * cycles( words[w] );
+            total += cost;
+            add( byLine, lines.lineAt( w ), counts[w], cost );
+            int k = Arrays.binarySearch( starts, w * 4 );
+            if( k < 0 ) k = -k - 2;                           // the last label at or before w
+            else while( k + 1 < starts.length && starts[k + 1] == w * 4 ) k++;
+            add( byLabel, k < 0 ? "(start)" : names[k], counts[w], cost );
+        }
+
+        PrintStream err = System.err;
+        err.println( ending );
+        err.println( emulator.steps() + " instructions, about " + total + " cycles"
+                + ( emulator.outside() > 0 ? ", " + emulator.outside() + " of them outside the program" : "" ) );
+
+        List<Map.Entry<Integer,long[]>> hotLines = hottest( byLine, top );
+        Map<Integer,String> text = readText( source, hotLines );
+        err.println();
+        err.println( String.format( "%8s %12s %14s %6s  %s", "line", "count", "cycles", "%", "source" ) );
+        for( Map.Entry<Integer,long[]> entry : hotLines ) {
+            long[] c    = entry.getValue();
+            String line = text.get( entry.getKey() );
+            err.println( String.format( "%8d %12d %14d %6.2f  %s", entry.getKey(), c[0], c[1],
+                    100.0 * c[1] / total, line == null ? "" : line.trim() ) );
+        }
+
+        err.println();
+        err.println( String.format( "%-24s %12s %14s %6s", "label", "count", "cycles", "%" ) );
+        for( Map.Entry<String,long[]> entry : hottest( byLabel, top ) ) {
+            long[] c = entry.getValue();
+            err.println( String.format( "%-24s %12d %14d %6.2f", entry.getKey(), c[0], c[1], 100.0 * c[1] / total ) );
+        }
+    }
+
+    ///////////////////////////////////////////////////////////////
+
+    // the labels' addresses in order, with their names; of labels at the same address the last is used
+    private void sortLabels( int[] starts, String[] names ) {
+        List<Map.Entry<String,Integer>> entries = Asm.byAddress( symbols );
+        for( int k = 0; k < entries.size(); k++ ) {
+            starts[k] = entries.get(k).getValue();
+            names[k]  = entries.get(k).getKey();
+        }
+    }
+
+    private static <K> void add( Map<K,long[]> totals, K key, long count, long cost ) {
+        long[] c = totals.get( key );
+        if( c == null ) totals.put( key, c = new long[2] );
+        c[0] += count;
+        c[1] += cost;
+    }
+
+    // the n entries with the most cycles, most first
+    private static <K> List<Map.Entry<K,long[]>> hottest( Map<K,long[]> totals, int n ) {
+        List<Map.Entry<K,long[]>> entries = new ArrayList<Map.Entry<K,long[]>>( totals.entrySet() );
+        Collections.sort( entries, new Comparator<Map.Entry<K,long[]>>() {
+            public int compare( Map.Entry<K,long[]> a, Map.Entry<K,long[]> b ) {
+                return Long.valueOf( b.getValue()[1] ).compareTo( a.getValue()[1] );
+            }
+        } );
+        return entries.subList( 0, Math.min( n, entries.size() ) );
+    }
+
+    // the text of the lines in hot, read from source again; nothing if there's no source
+    private static Map<Integer,String> readText( String source, List<Map.Entry<Integer,long[]>> hot ) throws IOException {
+        Map<Integer,String> text = new HashMap<Integer,String>();
+        if( source == null ) return text;
+        for( Map.Entry<Integer,long[]> entry : hot ) text.put( entry.getKey(), null );
+        BufferedReader in = new BufferedReader( new InputStreamReader( Asm.source( new FileInputStream( source ) ), "US-ASCII" ) );
+        try {
+            String line;
+            for( int number = 1; ( line = in.readLine() ) != null; number++ ) {
+                if( text.containsKey( number ) ) text.put( number, line );
+            }
+        } finally {
+            in.close();
+        }
+        return text;
+    }
+
+    private static int[] readWords( File file ) throws IOException {
+        DataInputStream in = new DataInputStream( new BufferedInputStream( new FileInputStream( file ), 1 << 16 ) );
+        try {
+            int[] words = new int[ (int) ( file.length() / 4 ) ];
+            for( int w = 0; w < words.length; w++ ) words[w] = in.readInt();
+            return words;
+        } finally {
+            in.close();
+        }
+    }
+
+    private static LineMap readLines( File file ) throws IOException {
+        InputStream in = new FileInputStream( file );
+        try {
+            return LineMap.read( in );
+        } finally {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,91 @@
+import java.util.*;
+import java.io.*;
+import java.util.concurrent.*;
+
+/** Reads another stream on a background thread, a chunk at a time, so that
+ *  producing the bytes (eg decompressing them with a GZIPInputStream) overlaps
+ *  with whatever the reader of this stream does with them (eg lexing).
+ *  At most a few chunks are read ahead; errors from the underlying stream are
+ *  rethrown from read once the chunks before them have been consumed.
+ */
+class ReadAheadInputStream extends InputStream {
+
+    private static final int    CHUNK = 1 << 16;
+    private static final byte[] END   = new byte[0];
+
+    private final BlockingQueue<byte[]> chunks = new ArrayBlockingQueue<byte[]>( 4 );
+    private final Thread                reader;
+    private volatile IOException        failure;
+
+    private byte[] chunk = new byte[0];
+    private int    pos   = 0;
+
+    public ReadAheadInputStream( final InputStream in ) {
+        reader = new Thread( "read-ahead" ) {
+            public void run() {
+                try {
+                    try {
+                        while( true ) {
+                            byte[] next = new byte[CHUNK];
+                            int    n    = 0;
+                            int    r;
+                            while( n < CHUNK && ( r = in.read( next, n, CHUNK - n ) ) >= 0 ) {
+                                n += r;
+                            }
+                            if( n > 0 ) chunks.put( n == CHUNK ? next : Arrays.copyOf( next, n ) );
+                            if( n < CHUNK ) break;
+                        }
+                    } catch( IOException e ) {
+                        failure = e;
+                    } finally {
+                        try { in.close(); } catch( IOException e ) { }
+                    }
+                    chunks.put( END );
+                } catch( InterruptedException e ) {
+                    // close() was called before everything was read; nobody is waiting for the rest
+                }
+            }
+        };
+        reader.setDaemon( true );
+        reader.start();
+    }
+
+    public int read() throws IOException {
+        if( ! fill() ) return -1;
+        return chunk[pos++] & 0xFF;
+    }
+
+    public int read( byte[] b, int off, int len ) throws IOException {
+        if( len == 0 ) return 0;
+        if( ! fill() ) return -1;
+        int n = Math.min( len, chunk.length - pos );
+        System.arraycopy( chunk, pos, b, off, n );
+        pos += n;
+        return n;
+    }
+
+    public int available() {
+        return chunk.length - pos;
+    }
+
+    public void close() {
+        reader.interrupt();
+    }
+
+    // makes sure there are unread bytes in chunk; false at the end of the stream
+    private boolean fill() throws IOException {
+        if( pos < chunk.length ) return true;
+        if( chunk == END ) return false;
+        try {
+            chunk = chunks.take();
+            pos   = 0;
+        } catch( InterruptedException e ) {
+            throw new InterruptedIOException();
+        }
+        if( chunk == END ) {
+            if( failure != null ) throw failure;
+            return false;
+        }
+        return true;
+    }
+}
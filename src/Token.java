@@ -0,0 +1,46 @@
+import java.math.*;
+
+/** The representation of a token. */
+class Token {
+    
+    public Kind   kind;   // The kind of token.
+    public String lexeme; // String representation of the actual token in the source code.
+
+    public Token( Kind kind, String lexeme ) {
+        this.kind   = kind;
+        this.lexeme = lexeme;
+    }
+
+    public String toString() {
+        return kind + " {" + lexeme + "}";
+    }
+
+    /** Returns an integer representation of the token. For tokens of kind
+     *  INT (decimal integer constant) and HEXINT (hexadecimal integer
+     *  constant), returns the integer constant. For tokens of kind
+     *  REGISTER, returns the register number.
+     */
+    public int toInt() {
+        if(      kind == Kind.INT      ) return parseLiteral( lexeme,              10, 32 );
+        else if( kind == Kind.HEXINT   ) return parseLiteral( lexeme.substring(2), 16, 32 );
+        else if( kind == Kind.REGISTER ) return parseLiteral( lexeme.substring(1), 10,  5 );
+        else {
+            throw new AsmError( "ERROR in to-int conversion." );
+        }
+    }
+    
+    private int parseLiteral( String s, int base, int bits ) {
+        BigInteger x = new BigInteger( s, base );
+        if( x.signum() > 0 ) {
+            if( x.bitLength() > bits ) {
+                throw new AsmError( "ERROR in parsing: constant out of range: " + s );
+            }
+        } else if( x.signum() < 0 ) {
+            if( x.negate().bitLength() > bits-1
+                    && x.negate().subtract(new BigInteger("1")).bitLength() > bits-1 ) {
+                throw new AsmError( "ERROR in parsing: constant out of range: " + s );
+            }
+        }
+        return (int) (x.longValue() & ((1L << bits) - 1));
+    }
+}
@@ -1,17 +1,24 @@
 import java.util.*;
+import java.io.*;
 
 public class Twice {
-    public static final void main(String[] args) {
-    	ArrayList<Integer> al = new ArrayList<Integer>();
-        Scanner s = new Scanner(System.in);
-        while(s.hasNext()) {
-            int i = new Integer(s.next());
-            System.out.println(i);
-            al.add( i );
+    public static final void main(String[] args) throws IOException {
+        // values are kept unboxed; the array doubles whenever it fills up
+        int[] al   = new int[1024];
+        int   size = 0;
+        IntReader in  = new IntReader( System.in );
+        IntWriter out = new IntWriter( System.out );
+        while( in.hasNext() ) {
+            int i = in.next();
+            out.println( i );
+            if( size == al.length ) {
+                al = Arrays.copyOf( al, size * 2 );
+            }
+            al[size++] = i;
         }
-        for ( int i = 0; i < al.size(); i++ ) {
-        	int j = al.get(i);
-        	System.out.println( j );
+        for ( int i = 0; i < size; i++ ) {
+            out.println( al[i] );
         }
+        out.flush();
     }
 }